@@ -1,26 +1,47 @@
 package com.quizapp.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.quizapp.dto.QuizCreationDto;
 import com.quizapp.dto.QuizSubmissionDto;
 import com.quizapp.dto.AiQuizRequest;
+import com.quizapp.dto.AiQuizBatchRequest;
 import com.quizapp.models.Quiz;
 import com.quizapp.models.Question;
+import com.quizapp.services.QuestionPayloadCache;
 import com.quizapp.services.QuestionService;
+import com.quizapp.services.QuizImportService;
 import com.quizapp.services.QuizService;
 import com.quizapp.services.AiQuizService;
+import com.quizapp.services.AiQuizWarmPool;
+import com.quizapp.services.AiQuizBatchService;
+import com.quizapp.services.GeminiUnavailableException;
 
 import java.util.List;
 
@@ -32,11 +53,18 @@ public class QuizController {
 	private QuizService quizService;
 	private QuestionService questionService;
 	private AiQuizService aiQuizService;
+	private QuizImportService importService;
+	private AiQuizWarmPool aiQuizWarmPool;
+	private AiQuizBatchService aiQuizBatchService;
 
-	public QuizController(QuizService quizService, QuestionService questionService, AiQuizService aiQuizService) {
+	public QuizController(QuizService quizService, QuestionService questionService, AiQuizService aiQuizService,
+			QuizImportService importService, AiQuizWarmPool aiQuizWarmPool, AiQuizBatchService aiQuizBatchService) {
 		this.quizService = quizService;
 		this.questionService = questionService;
 		this.aiQuizService = aiQuizService;
+		this.importService = importService;
+		this.aiQuizWarmPool = aiQuizWarmPool;
+		this.aiQuizBatchService = aiQuizBatchService;
 	}
 
 	@PostMapping("create")
@@ -44,19 +72,21 @@ public class QuizController {
 			@RequestBody QuizCreationDto quizDto) {
 		Quiz quiz = quizDto.getQuiz();
 		quiz.setUserId(userId);
-		String quizId = quizService.createQuiz(quiz, quizDto.getQuestions());
-		if (quizId == null || quizId.trim().isEmpty())
-			return ResponseEntity.internalServerError().build();
-
-		if (questionService.addQuestions(quizDto.getQuestions(), quizId))
-			return ResponseEntity.status(HttpStatus.CREATED).body(quizId);
-		// Quiz creation request received
-		return ResponseEntity.notFound().build();
+		return quizService.createQuiz(quiz, quizDto.getQuestions());
+	}
+
+	/** Bulk creation from NDJSON, one {@link QuizCreationDto} per line. */
+	@PostMapping(value = "import", consumes = "application/x-ndjson")
+	public ResponseEntity<?> importQuizzes(@RequestAttribute("userId") String userId, InputStream body)
+			throws IOException {
+		return importService.importQuizzes(userId, body);
 	}
 
 	@GetMapping("{quizId}")
-	public ResponseEntity<?> getQuiz(@PathVariable("quizId") String id) {
-		return questionService.getQuiz(id);
+	public ResponseEntity<?> getQuiz(@PathVariable("quizId") String id,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+		return questionService.getQuiz(id, QuestionPayloadCache.acceptsGzip(acceptEncoding), ifNoneMatch);
 	}
 
 	@GetMapping("attempt/{quizId}")
@@ -67,25 +97,125 @@ public class QuizController {
 	}
 
 	@PostMapping("start")
-	public ResponseEntity<?> getQuestions(@RequestBody Map<String, String> quizId) {
-		return questionService.getQuiz(quizId.get("quizId"));
+	public ResponseEntity<?> getQuestions(@RequestBody Map<String, String> quizId,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+		// Not cacheable as a POST; clients that want caching use GET {quizId}
+		return questionService.getQuestions(quizId.get("quizId"), QuestionPayloadCache.acceptsGzip(acceptEncoding));
 	}
 
 	@PostMapping("submit")
 	public ResponseEntity<?> submitQuiz(@RequestBody QuizSubmissionDto answers, @RequestAttribute String userId) {
 		answers.getAnswers().remove("0");
-		return quizService.submitQuiz(answers.getQuizId(), userId, answers.getDate(), answers.getAnswers());
+		return quizService.submitQuiz(answers.getQuizId(), userId, answers.getAnswers());
 	}
 
 	@PostMapping("generate-ai")
-	public ResponseEntity<?> generateAiQuiz(@RequestBody AiQuizRequest request) {
+	public DeferredResult<ResponseEntity<?>> generateAiQuiz(@RequestBody AiQuizRequest request,
+			@RequestParam(defaultValue = "false") boolean fresh) {
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(aiQuizService.getTimeout().toMillis(),
+				ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("Quiz generation timed out"));
+		if (!fresh) {
+			Optional<List<Question>> pooled = aiQuizWarmPool.take(request);
+			if (pooled.isPresent()) {
+				result.setResult(ResponseEntity.ok(pooled.get()));
+				return result;
+			}
+		}
+		CompletableFuture<List<Question>> generation;
 		try {
-			List<Question> questions = aiQuizService.generateQuiz(request);
-			return ResponseEntity.ok(questions);
-		} catch (Exception e) {
-			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-					.body("Failed to generate quiz: " + e.getMessage());
+			generation = aiQuizService.generateQuizAsync(request, fresh);
+		} catch (RejectedExecutionException e) {
+			result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, "5").body("Too many quiz generations in progress, try again"));
+			return result;
+		} catch (GeminiUnavailableException e) {
+			result.setResult(unavailable(e));
+			return result;
 		}
+		result.onTimeout(() -> generation.cancel(false));
+		generation.whenComplete((questions, e) -> {
+			if (e instanceof CancellationException)
+				return; // timed out, the timeout response is used
+			if (e == null) {
+				result.setResult(ResponseEntity.ok(questions));
+				return;
+			}
+			GeminiUnavailableException unavailable = GeminiUnavailableException.find(e);
+			if (unavailable != null) {
+				result.setResult(unavailable(unavailable));
+				return;
+			}
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body("Failed to generate quiz: " + cause.getMessage()));
+		});
+		return result;
+	}
+
+	/**
+	 * Streams the questions of an AI quiz as server-sent events as soon as each is
+	 * generated: one "question" event per question, then "done" with the count,
+	 * or "error" with a message.
+	 */
+	@PostMapping(value = "generate-ai/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> streamAiQuiz(@RequestBody AiQuizRequest request) {
+		SseEmitter emitter = new SseEmitter(aiQuizService.getTimeout().toMillis());
+		CompletableFuture<List<Question>> generation;
+		try {
+			generation = aiQuizService.streamQuizAsync(request, question -> send(emitter, "question", question));
+		} catch (RejectedExecutionException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+		} catch (GeminiUnavailableException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds())).build();
+		}
+		// Stops the upstream call when this was its last listener
+		emitter.onTimeout(() -> generation.cancel(false));
+		emitter.onCompletion(() -> generation.cancel(false));
+		emitter.onError(e -> generation.cancel(false));
+		generation.whenComplete((questions, e) -> {
+			if (e instanceof CancellationException)
+				return; // the client went away or the stream timed out
+			try {
+				if (e == null) {
+					send(emitter, "done", Collections.singletonMap("count", questions.size()));
+				} else {
+					// Upstream details stay in the server log
+					GeminiUnavailableException unavailable = GeminiUnavailableException.find(e);
+					send(emitter, "error",
+							unavailable != null ? unavailable.getMessage() : "Failed to generate quiz, try again");
+				}
+				emitter.complete();
+			} catch (RuntimeException gone) {
+				// The client went away or the stream timed out
+			}
+		});
+		return ResponseEntity.ok(emitter);
+	}
+
+	private static ResponseEntity<?> unavailable(GeminiUnavailableException e) {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds())).body(e.getMessage());
+	}
+
+	/** Sends one event; a failure aborts the generation feeding the stream. */
+	private static void send(SseEmitter emitter, String name, Object data) {
+		try {
+			emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@PostMapping("generate-ai/batch")
+	public ResponseEntity<?> generateAiQuizBatch(@RequestBody AiQuizBatchRequest request,
+			@RequestAttribute String userId) {
+		return aiQuizBatchService.submit(userId, request);
+	}
+
+	@GetMapping("generate-ai/batch/{jobId}")
+	public ResponseEntity<?> getAiQuizBatch(@PathVariable String jobId, @RequestAttribute String userId) {
+		return aiQuizBatchService.status(userId, jobId);
 	}
 
 	@GetMapping("health")
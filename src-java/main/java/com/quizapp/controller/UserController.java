@@ -1,7 +1,9 @@
 package com.quizapp.controller;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,11 +11,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.quizapp.models.Quiz;
 import com.quizapp.models.User;
+import com.quizapp.services.QuestionPayloadCache;
 import com.quizapp.services.UserService;
 
 @RestController
@@ -28,12 +34,12 @@ public class UserController {
     }
 
     @PostMapping("register")
-    public ResponseEntity<?> registerUser(@RequestBody User user) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody User user) {
         return userService.registerUser(user);
     }
 
     @PostMapping("login")
-    public ResponseEntity<?> loginUser(@RequestBody Map<String, String> user) {
+    public CompletableFuture<ResponseEntity<?>> loginUser(@RequestBody Map<String, String> user) {
         return userService.loginUser(user);
     }
 
@@ -43,23 +49,35 @@ public class UserController {
     }
 
     @GetMapping("creations")
-    public ResponseEntity<?> allQuizzes(@RequestAttribute String userId) {
-        return userService.allQuizzes(userId);
+    public ResponseEntity<?> allQuizzes(@RequestAttribute String userId,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) String cursor) {
+        return userService.allQuizzes(userId, limit, cursor);
     }
 
     @GetMapping("creations/{quizId}")
-    public ResponseEntity<Quiz> specificQuiz(@PathVariable String quizId, @RequestAttribute String userId) {
-        return userService.getQuiz(quizId, userId);
+    public ResponseEntity<Quiz> specificQuiz(@PathVariable String quizId, @RequestAttribute String userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return userService.getQuiz(quizId, userId, ifNoneMatch);
     }
 
     @GetMapping("creations/{quizId}/questions")
     public ResponseEntity<?> getQuestions(@PathVariable("quizId") String quizId,
-            @RequestAttribute("userId") String userId) {
-        return userService.getQuestions(quizId, userId);
+            @RequestAttribute("userId") String userId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return userService.getQuestions(quizId, userId, QuestionPayloadCache.acceptsGzip(acceptEncoding), ifNoneMatch);
+    }
+
+    @GetMapping("creations/{quizId}/results")
+    public ResponseEntity<StreamingResponseBody> exportResults(@PathVariable("quizId") String quizId,
+            @RequestAttribute("userId") String userId,
+            @RequestParam(defaultValue = "csv") String format) {
+        return userService.exportResults(quizId, userId, format);
     }
 
     @GetMapping("attempted")
-    public ResponseEntity<?> getAttempted(@RequestAttribute String userId) {
-        return userService.getAttempted(userId);
+    public ResponseEntity<?> getAttempted(@RequestAttribute String userId,
+            @RequestParam(required = false) Integer limit, @RequestParam(required = false) String cursor) {
+        return userService.getAttempted(userId, limit, cursor);
     }
 }
@@ -0,0 +1,71 @@
+package com.quizapp.dto;
+
+import java.util.List;
+
+public class AiQuizBatchRequest {
+    private String grade;
+    private String difficulty;
+    private String subject;
+    private List<Topic> topics;
+
+    public static class Topic {
+        private String topic;
+        private int count;
+
+        public Topic() {
+        }
+
+        public Topic(String topic, int count) {
+            this.topic = topic;
+            this.count = count;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public void setTopic(String topic) {
+            this.topic = topic;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+
+    public String getGrade() {
+        return grade;
+    }
+
+    public void setGrade(String grade) {
+        this.grade = grade;
+    }
+
+    public String getDifficulty() {
+        return difficulty;
+    }
+
+    public void setDifficulty(String difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public List<Topic> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(List<Topic> topics) {
+        this.topics = topics;
+    }
+}
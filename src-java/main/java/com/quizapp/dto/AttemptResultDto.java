@@ -0,0 +1,45 @@
+package com.quizapp.dto;
+
+import java.time.Instant;
+
+/**
+ * One row of a quiz's results export: who attempted it, when, and the score.
+ */
+public class AttemptResultDto {
+	String userId;
+	String firstName;
+	String lastName;
+	int points;
+	int totalPoints;
+	Instant date;
+
+	public AttemptResultDto(String userId, String firstName, String lastName, int points, int totalPoints,
+			Instant date) {
+		this.userId = userId;
+		this.firstName = firstName;
+		this.lastName = lastName;
+		this.points = points;
+		this.totalPoints = totalPoints;
+		this.date = date;
+	}
+	public String getUserId() {
+		return userId;
+	}
+	public String getFirstName() {
+		return firstName;
+	}
+	public String getLastName() {
+		return lastName;
+	}
+	public int getPoints() {
+		return points;
+	}
+	public int getTotalPoints() {
+		return totalPoints;
+	}
+	public Instant getDate() {
+		return date;
+	}
+
+
+}
@@ -1,29 +1,61 @@
 package com.quizapp.dto;
 
+import java.time.Instant;
+
+/**
+ * An attempt together with the details of its quiz, read in one joined query.
+ */
 public class AttemptedQuizDto {
-	String totalPoints;
-	String points;
-	String date;
+	String userId;
+	String quizId;
+	int totalPoints;
+	int points;
+	Instant date;
 	String title;
 	String subject;
 	String difficulty;
-	String totalQuestions;
-	public String getTotalPoints() {
+	int totalQuestions;
+
+	public AttemptedQuizDto(String userId, String quizId, int points, Instant date, int totalPoints, String title,
+			String subject, String difficulty, int totalQuestions) {
+		this.userId = userId;
+		this.quizId = quizId;
+		this.points = points;
+		this.date = date;
+		this.totalPoints = totalPoints;
+		this.title = title;
+		this.subject = subject;
+		this.difficulty = difficulty;
+		this.totalQuestions = totalQuestions;
+	}
+	public String getUserId() {
+		return userId;
+	}
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+	public String getQuizId() {
+		return quizId;
+	}
+	public void setQuizId(String quizId) {
+		this.quizId = quizId;
+	}
+	public int getTotalPoints() {
 		return totalPoints;
 	}
-	public void setTotalPoints(String totalPoints) {
+	public void setTotalPoints(int totalPoints) {
 		this.totalPoints = totalPoints;
 	}
-	public String getPoints() {
+	public int getPoints() {
 		return points;
 	}
-	public void setPoints(String points) {
+	public void setPoints(int points) {
 		this.points = points;
 	}
-	public String getDate() {
+	public Instant getDate() {
 		return date;
 	}
-	public void setDate(String date) {
+	public void setDate(Instant date) {
 		this.date = date;
 	}
 	public String getTitle() {
@@ -44,12 +76,12 @@ public class AttemptedQuizDto {
 	public void setDifficulty(String difficulty) {
 		this.difficulty = difficulty;
 	}
-	public String getTotalQuestions() {
+	public int getTotalQuestions() {
 		return totalQuestions;
 	}
-	public void setTotalQuestions(String totalQuestions) {
+	public void setTotalQuestions(int totalQuestions) {
 		this.totalQuestions = totalQuestions;
 	}
-	
-	
+
+
 }
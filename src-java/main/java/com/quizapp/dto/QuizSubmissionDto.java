@@ -8,6 +8,7 @@ import com.quizapp.models.Quiz;
 
 public class QuizSubmissionDto {
 	private String quizId;
+	// Still accepted from older clients but ignored; attempts are stamped with server time
 	private String date;
 	private Map<String, String> answers;
 	public String getQuizId() {
@@ -9,7 +9,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -20,17 +19,18 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
-import io.jsonwebtoken.Jwts;
+import com.quizapp.utils.JwtUtil;
 
 import java.util.Collections;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    @Value("${security.jwt.secret:change-me-secret}")
-    private String jwtSecret;
+    private final JwtUtil jwtUtil;
+
+    public JwtAuthFilter(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
@@ -44,16 +44,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         String userId = null;
         if (StringUtils.hasText(authHeader) && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            try {
-                Jws<Claims> jws = Jwts.parserBuilder()
-                        .setSigningKey(jwtSecret.getBytes(StandardCharsets.UTF_8))
-                        .build()
-                        .parseClaimsJws(token);
-                userId = jws.getBody().getSubject();
-            } catch (Exception e) {
-                // Invalid token → proceed without auth; security rules will block if required
-            }
+            // Invalid token → null, proceed without auth; security rules will block if required
+            userId = jwtUtil.verify(authHeader.substring(7));
         } else if (StringUtils.hasText(legacyPid) && !"undefined".equals(legacyPid)) {
             try {
                 byte[] decoded = Base64.getDecoder().decode(legacyPid);
@@ -1,8 +1,32 @@
 package com.quizapp.keys;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 public class QuestionCompositeKey implements Serializable{
 	String quizId;
 	String questionNo;
+
+	public QuestionCompositeKey() {
+	}
+
+	public QuestionCompositeKey(String quizId, String questionNo) {
+		this.quizId = quizId;
+		this.questionNo = questionNo;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof QuestionCompositeKey))
+			return false;
+		QuestionCompositeKey other = (QuestionCompositeKey) o;
+		return Objects.equals(quizId, other.quizId) && Objects.equals(questionNo, other.questionNo);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(quizId, questionNo);
+	}
 }
@@ -0,0 +1,133 @@
+package com.quizapp.migrations;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the points, totals and dates that were stored as strings into integer
+ * and timestamp columns. Numbers that do not parse become 0. Dates were whatever
+ * the browser's toLocaleDateString() produced; numeric day/month/year forms are
+ * parsed, with ambiguous ones read in the order of the legacyDateOrder
+ * placeholder (MDY or DMY). Dates that cannot be parsed become the epoch so they
+ * sort last.
+ */
+public class V2__Typed_numeric_and_date_columns extends BaseJavaMigration {
+
+	private static final Logger log = LoggerFactory.getLogger(V2__Typed_numeric_and_date_columns.class);
+	private static final Pattern NUMERIC_DATE = Pattern.compile("(\\d{1,4})[./-](\\d{1,2})[./-](\\d{1,4})");
+	private static final Calendar UTC = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+	private boolean monthFirst;
+
+	@Override
+	public void migrate(Context context) throws Exception {
+		monthFirst = !"DMY".equalsIgnoreCase(context.getConfiguration().getPlaceholders().get("legacyDateOrder"));
+		Connection conn = context.getConnection();
+		String[] quizKey = { "quiz_id" };
+		String[] questionKey = { "quiz_id", "question_no" };
+		String[] attemptKey = { "quiz_id", "user_id" };
+
+		retype(conn, "quiz", quizKey, "total_points", "integer", this::toInt);
+		retype(conn, "quiz", quizKey, "total_questions", "integer", this::toInt);
+		retype(conn, "quiz", quizKey, "date", "timestamp", this::toTimestamp);
+		retype(conn, "question", questionKey, "points", "integer", this::toInt);
+		retype(conn, "attempted_quiz", attemptKey, "points", "integer", this::toInt);
+		retype(conn, "attempted_quiz", attemptKey, "total_points", "integer", this::toInt);
+		retype(conn, "attempted_quiz", attemptKey, "date", "timestamp", this::toTimestamp);
+	}
+
+	/**
+	 * Adds a typed shadow column, fills it row by row in JDBC batches, then
+	 * replaces the string column with it.
+	 */
+	private void retype(Connection conn, String table, String[] key, String column, String sqlType,
+			Function<String, Object> convert) throws SQLException {
+		String typed = column + "_typed";
+		try (Statement st = conn.createStatement()) {
+			st.execute("alter table " + table + " add column " + typed + " " + sqlType);
+		}
+		String where = String.join(" = ? and ", key) + " = ?";
+		String select = "select " + String.join(", ", key) + ", " + column + " from " + table;
+		String update = "update " + table + " set " + typed + " = ? where " + where;
+		int rows = 0;
+		try (Statement st = conn.createStatement();
+				ResultSet rs = st.executeQuery(select);
+				PreparedStatement ps = conn.prepareStatement(update)) {
+			while (rs.next()) {
+				Object value = convert.apply(rs.getString(key.length + 1));
+				if (value instanceof Timestamp)
+					ps.setTimestamp(1, (Timestamp) value, UTC);
+				else
+					ps.setObject(1, value);
+				for (int i = 0; i < key.length; i++)
+					ps.setString(i + 2, rs.getString(i + 1));
+				ps.addBatch();
+				if (++rows % 500 == 0)
+					ps.executeBatch();
+			}
+			ps.executeBatch();
+		}
+		try (Statement st = conn.createStatement()) {
+			st.execute("alter table " + table + " drop column " + column);
+			st.execute("alter table " + table + " rename column " + typed + " to " + column);
+			if ("integer".equals(sqlType))
+				st.execute("alter table " + table + " alter column " + column + " set not null");
+		}
+		log.info("Converted {} rows of {}.{} to {}", rows, table, column, sqlType);
+	}
+
+	private Object toInt(String value) {
+		try {
+			return value == null ? 0 : Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private Object toTimestamp(String value) {
+		LocalDate date = value == null ? null : parseDate(value.trim());
+		Instant instant = date == null ? Instant.EPOCH : date.atStartOfDay(ZoneOffset.UTC).toInstant();
+		return Timestamp.from(instant);
+	}
+
+	private LocalDate parseDate(String value) {
+		try {
+			return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value);
+		} catch (DateTimeParseException e) {
+			// Not ISO; try the numeric locale forms below
+		}
+		Matcher m = NUMERIC_DATE.matcher(value);
+		if (!m.find())
+			return null;
+		int a = Integer.parseInt(m.group(1));
+		int b = Integer.parseInt(m.group(2));
+		int c = Integer.parseInt(m.group(3));
+		try {
+			if (m.group(1).length() == 4)
+				return LocalDate.of(a, b, c);
+			if (a > 12 || (!monthFirst && b <= 12))
+				return LocalDate.of(c, b, a);
+			return LocalDate.of(c, a, b);
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+}
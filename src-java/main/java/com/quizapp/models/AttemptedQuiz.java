@@ -1,7 +1,10 @@
 package com.quizapp.models;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import com.quizapp.keys.AttemptedQuizKey;
 
+import java.time.Instant;
+
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
@@ -13,15 +16,18 @@ public class AttemptedQuiz {
 	private String userId;
 	@Id
 	private String quizId;
-	private String points;
-	private String date;
-	private String totalPoints;
+	// Serialized as strings to keep the REST contract of the former varchar columns
+	@JsonFormat(shape = JsonFormat.Shape.STRING)
+	private int points;
+	private Instant date;
+	@JsonFormat(shape = JsonFormat.Shape.STRING)
+	private int totalPoints;
 
 	public AttemptedQuiz() {
 		super();
 	}
 
-	public AttemptedQuiz(String userId, String quizId, String points, String date, String totalPoints) {
+	public AttemptedQuiz(String userId, String quizId, int points, Instant date, int totalPoints) {
 		super();
 		this.userId = userId;
 		this.quizId = quizId;
@@ -46,27 +52,27 @@ public class AttemptedQuiz {
 		this.quizId = quizId;
 	}
 
-	public String getPoints() {
+	public int getPoints() {
 		return points;
 	}
 
-	public void setPoints(String points) {
+	public void setPoints(int points) {
 		this.points = points;
 	}
 
-	public String getDate() {
+	public Instant getDate() {
 		return date;
 	}
 
-	public void setDate(String date) {
+	public void setDate(Instant date) {
 		this.date = date;
 	}
 
-	public String getTotalPoints() {
+	public int getTotalPoints() {
 		return totalPoints;
 	}
 
-	public void setTotalPoints(String totalPoints) {
+	public void setTotalPoints(int totalPoints) {
 		this.totalPoints = totalPoints;
 	}
 
@@ -5,10 +5,18 @@ import com.quizapp.keys.QuestionCompositeKey;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
 @IdClass(value = QuestionCompositeKey.class)
-public class Question {
+public class Question implements Persistable<QuestionCompositeKey> {
 	@Id
 	String quizId;
 	@Id
@@ -19,7 +27,35 @@ public class Question {
 	String option3;
 	String option4;
 	String correct;
-	String points;
+	// Serialized as a string to keep the REST contract of the former varchar column
+	@JsonFormat(shape = JsonFormat.Shape.STRING)
+	int points;
+	// The id is assigned, so without this save() would SELECT before every INSERT
+	@Transient
+	boolean isNew = true;
+
+	@Override
+	@JsonIgnore
+	public QuestionCompositeKey getId() {
+		return new QuestionCompositeKey(quizId, questionNo);
+	}
+
+	@Override
+	@JsonIgnore
+	public boolean isNew() {
+		return isNew;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markNotNew() {
+		isNew = false;
+	}
+
+	/** Makes the next save() insert again, after the transaction that persisted it was rolled back. */
+	public void markNew() {
+		isNew = true;
+	}
 
 	public String getQuizId() {
 		return quizId;
@@ -85,16 +121,16 @@ public class Question {
 		this.correct = correct;
 	}
 
-	public String getPoints() {
+	public int getPoints() {
 		return points;
 	}
 
-	public void setPoints(String points) {
+	public void setPoints(int points) {
 		this.points = points;
 	}
 
 	public Question(String questionNo, String question, String option1, String option2, String option3, String option4,
-			String correct, String points) {
+			String correct, int points) {
 		super();
 		this.questionNo = questionNo;
 		this.question = question;
@@ -1,20 +1,63 @@
 package com.quizapp.models;
 
+import java.time.Instant;
+
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 @Entity
-public class Quiz {
+public class Quiz implements Persistable<String> {
 	@Id
 	String quizId;
 	String userId;
-	String date;
+	// Stamped by the server on creation; a date sent by the client is ignored
+	@JsonProperty(access = JsonProperty.Access.READ_ONLY)
+	Instant date;
 	String difficulty;
 	String subject;
 	String title;
 	int duration;
-	String totalQuestions;
-	String totalPoints;
+	// Serialized as strings to keep the REST contract of the former varchar columns
+	@JsonFormat(shape = JsonFormat.Shape.STRING)
+	int totalQuestions;
+	@JsonFormat(shape = JsonFormat.Shape.STRING)
+	int totalPoints;
+	// Codes are assigned, not generated, so save() would merge a reused code into the
+	// existing quiz; a new quiz is persisted instead and fails on a duplicate code
+	@Transient
+	boolean isNew = true;
+
+	@Override
+	@JsonIgnore
+	public String getId() {
+		return quizId;
+	}
+
+	@Override
+	@JsonIgnore
+	public boolean isNew() {
+		return isNew;
+	}
+
+	@PostLoad
+	@PostPersist
+	void markNotNew() {
+		isNew = false;
+	}
+
+	/** Makes the next save() insert again, after the transaction that persisted it was rolled back. */
+	public void markNew() {
+		isNew = true;
+	}
 
 	public String getQuizId() {
 		return quizId;
@@ -32,11 +75,11 @@ public class Quiz {
 		this.userId = userId;
 	}
 
-	public String getDate() {
+	public Instant getDate() {
 		return date;
 	}
 
-	public void setDate(String date) {
+	public void setDate(Instant date) {
 		this.date = date;
 	}
 
@@ -72,16 +115,16 @@ public class Quiz {
 		this.duration = duration;
 	}
 
-	public String getTotalQuestions() {
+	public int getTotalQuestions() {
 		return totalQuestions;
 	}
 
-	public void setTotalQuestions(String totalQuestions) {
+	public void setTotalQuestions(int totalQuestions) {
 		this.totalQuestions = totalQuestions;
 	}
 
-	public Quiz(String quizId, String date, String difficulty, String subject, String title, int duration,
-			String totalQuestions, String totalPoints) {
+	public Quiz(String quizId, Instant date, String difficulty, String subject, String title, int duration,
+			int totalQuestions, int totalPoints) {
 		super();
 		this.quizId = quizId;
 		this.date = date;
@@ -97,11 +140,11 @@ public class Quiz {
 		super();
 	}
 
-	public String getTotalPoints() {
+	public int getTotalPoints() {
 		return totalPoints;
 	}
 
-	public void setTotalPoints(String totalPoints) {
+	public void setTotalPoints(int totalPoints) {
 		this.totalPoints = totalPoints;
 	}
 
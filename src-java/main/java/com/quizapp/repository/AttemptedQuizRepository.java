@@ -1,18 +1,50 @@
 package com.quizapp.repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import com.quizapp.dto.AttemptResultDto;
+import com.quizapp.dto.AttemptedQuizDto;
 import com.quizapp.keys.AttemptedQuizKey;
 import com.quizapp.models.AttemptedQuiz;
 
-public interface AttemptedQuizRepository extends JpaRepository<AttemptedQuiz, AttemptedQuizKey> {
+public interface AttemptedQuizRepository
+		extends JpaRepository<AttemptedQuiz, AttemptedQuizKey>, AttemptedQuizRepositoryCustom {
+
+	/** Attempts joined with their quiz, so history pages need a single query. */
+	String DETAILS = "Select new com.quizapp.dto.AttemptedQuizDto(a.userId, a.quizId, a.points, a.date, a.totalPoints, "
+			+ "q.title, q.subject, q.difficulty, q.totalQuestions) from AttemptedQuiz a join Quiz q on q.quizId = a.quizId ";
 
 	Optional<AttemptedQuiz> findByUserIdAndQuizId(String userId, String quizId);
 
-	List<AttemptedQuiz> findByUserId(String userId);
+	boolean existsByUserIdAndQuizId(String userId, String quizId);
+
+	@Query(DETAILS + "where a.userId = ?1 order by a.date desc, a.quizId desc")
+	List<AttemptedQuizDto> findDetailsByUserId(String userId);
+
+	@Query(DETAILS + "where a.userId = ?1 order by a.date desc, a.quizId desc")
+	List<AttemptedQuizDto> findFirstPageByUserId(String userId, Pageable page);
+
+	@Query(DETAILS + "where a.userId = ?1 and (a.date < ?2 or (a.date = ?2 and a.quizId < ?3)) order by a.date desc, a.quizId desc")
+	List<AttemptedQuizDto> findPageByUserIdAfter(String userId, Instant date, String quizId, Pageable page);
+
+	/**
+	 * All attempts of a quiz as unmanaged DTOs, read through a forward-only cursor
+	 * in primary key order, so the database needs no sort before the first row.
+	 * Must be consumed, and closed, inside a transaction.
+	 */
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+	@Query("Select new com.quizapp.dto.AttemptResultDto(a.userId, u.firstName, u.lastName, a.points, a.totalPoints, a.date) "
+			+ "from AttemptedQuiz a left join User u on u.id = a.userId where a.quizId = ?1 order by a.userId")
+	Stream<AttemptResultDto> streamResultsByQuizId(String quizId);
 
 }
@@ -0,0 +1,21 @@
+package com.quizapp.repository;
+
+import java.util.List;
+
+import com.quizapp.models.AttemptedQuiz;
+
+public interface AttemptedQuizRepositoryCustom {
+
+	/**
+	 * Records the attempt with one atomic insert-if-absent statement. Returns
+	 * false if the user already has an attempt for the quiz.
+	 */
+	boolean insertIfAbsent(AttemptedQuiz attempt);
+
+	/**
+	 * Inserts all attempts with a single JDBC batch of insert-if-absent
+	 * statements; attempts that already exist are skipped. Returns the number of
+	 * rows inserted.
+	 */
+	int insertAllIfAbsent(List<AttemptedQuiz> attempts);
+}
@@ -0,0 +1,77 @@
+package com.quizapp.repository;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import com.quizapp.models.AttemptedQuiz;
+
+/**
+ * Plain JDBC inserts for {@link AttemptedQuiz}. Going through
+ * {@code save} costs a merge SELECT per row because the entity has an assigned
+ * composite id, and a check-then-insert races between concurrent submissions.
+ * These statements insert only when the (user, quiz) row is absent, atomically
+ * and in one round trip.
+ */
+public class AttemptedQuizRepositoryImpl implements AttemptedQuizRepositoryCustom {
+
+	private static final String POSTGRES_INSERT_SQL = "insert into attempted_quiz (user_id, quiz_id, points, date, total_points) "
+			+ "values (?, ?, ?, ?, ?) on conflict do nothing";
+
+	private static final String H2_MERGE_SQL = "merge into attempted_quiz t "
+			+ "using (values (cast(? as varchar(255)), cast(? as varchar(255)), cast(? as integer), cast(? as timestamp), cast(? as integer))) "
+			+ "s (user_id, quiz_id, points, date, total_points) "
+			+ "on t.user_id = s.user_id and t.quiz_id = s.quiz_id "
+			+ "when not matched then insert (user_id, quiz_id, points, date, total_points) "
+			+ "values (s.user_id, s.quiz_id, s.points, s.date, s.total_points)";
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private final JdbcTemplate jdbcTemplate;
+	private final String insertIfAbsentSql;
+
+	public AttemptedQuizRepositoryImpl(JdbcTemplate jdbcTemplate, DataSource dataSource) throws MetaDataAccessException {
+		this.jdbcTemplate = jdbcTemplate;
+		String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+		this.insertIfAbsentSql = "H2".equals(product) ? H2_MERGE_SQL : POSTGRES_INSERT_SQL;
+	}
+
+	@Override
+	public boolean insertIfAbsent(AttemptedQuiz attempt) {
+		try {
+			return jdbcTemplate.update(insertIfAbsentSql, ps -> bind(ps, attempt)) == 1;
+		} catch (DuplicateKeyException e) {
+			// H2 MERGE is not atomic against a concurrent insert of the same key
+			return false;
+		}
+	}
+
+	@Override
+	public int insertAllIfAbsent(List<AttemptedQuiz> attempts) {
+		int inserted = 0;
+		for (int[] counts : jdbcTemplate.batchUpdate(insertIfAbsentSql, attempts, attempts.size(), this::bind)) {
+			for (int count : counts)
+				inserted += Math.max(count, 0);
+		}
+		return inserted;
+	}
+
+	private void bind(PreparedStatement ps, AttemptedQuiz attempt) throws SQLException {
+		ps.setString(1, attempt.getUserId());
+		ps.setString(2, attempt.getQuizId());
+		ps.setInt(3, attempt.getPoints());
+		ps.setTimestamp(4, Timestamp.from(attempt.getDate()), Calendar.getInstance(UTC));
+		ps.setInt(5, attempt.getTotalPoints());
+	}
+}
@@ -3,8 +3,10 @@ package com.quizapp.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.quizapp.models.User;
 
@@ -14,4 +16,9 @@ public interface UserRepository extends JpaRepository<User, String>{
 	Optional<User> findByEmail(String email);
 	@Query("Select u.firstName from User u where u.id=?1")
 	Optional<String> findByUserId(String userId);
+
+	@Modifying
+	@Transactional
+	@Query("update User u set u.password = ?3 where u.id = ?1 and u.password = ?2")
+	int updatePassword(String id, String currentHash, String newHash);
 }
@@ -0,0 +1,281 @@
+package com.quizapp.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.quizapp.dto.AiQuizBatchRequest;
+import com.quizapp.dto.AiQuizRequest;
+import com.quizapp.models.Question;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Batch AI generation: a list of topics with question counts becomes a job whose
+ * prompt-sized chunks run concurrently on a pool of their own, so the job takes
+ * about as long as its slowest chunk. Upstream calls still share the client's
+ * global rate limit. When every chunk is done, results are merged in request
+ * order, duplicate questions dropped and questionNo renumbered 1..n. Jobs are
+ * polled by their owner and forgotten after the retention period.
+ */
+@Service
+public class AiQuizBatchService {
+
+    private static final class Chunk {
+        final int topicIndex;
+        final String topic;
+        final int count;
+        final int part;
+        final int parts;
+        volatile List<Question> questions = Collections.emptyList();
+
+        Chunk(int topicIndex, String topic, int count, int part, int parts) {
+            this.topicIndex = topicIndex;
+            this.topic = topic;
+            this.count = count;
+            this.part = part;
+            this.parts = parts;
+        }
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String userId;
+        final AiQuizBatchRequest request;
+        final List<Chunk> chunks;
+        final AtomicInteger completedChunks = new AtomicInteger();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        volatile String status = "RUNNING";
+        volatile List<Question> questions;
+        volatile List<Map<String, Object>> topics;
+
+        Job(String userId, AiQuizBatchRequest request, List<Chunk> chunks) {
+            this.userId = userId;
+            this.request = request;
+            this.chunks = chunks;
+        }
+    }
+
+    private final AiQuizService aiQuizService;
+    private final int chunkSize;
+    private final int maxQuestions;
+    private final int maxJobs;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, Job> jobs;
+    private final AtomicInteger runningJobs = new AtomicInteger();
+    private final Timer jobTime;
+    private final Counter duplicates;
+
+    public AiQuizBatchService(AiQuizService aiQuizService, MeterRegistry meterRegistry,
+            @Value("${ai.batch.chunk-size:10}") int chunkSize,
+            @Value("${ai.batch.max-questions:100}") int maxQuestions,
+            @Value("${ai.batch.max-jobs:4}") int maxJobs,
+            @Value("${ai.batch.concurrency:8}") int concurrency,
+            @Value("${ai.batch.retention:1h}") Duration retention) {
+        this.aiQuizService = aiQuizService;
+        this.chunkSize = chunkSize;
+        this.maxQuestions = maxQuestions;
+        this.maxJobs = maxJobs;
+        AtomicInteger count = new AtomicInteger();
+        // Admission allows max-jobs jobs, and a job has at most one chunk per question
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxJobs * maxQuestions), r -> {
+                    Thread t = new Thread(r, "ai-batch-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = Caffeine.newBuilder().expireAfterWrite(retention).maximumSize(1000).build();
+        this.jobTime = meterRegistry.timer("ai.batch");
+        this.duplicates = meterRegistry.counter("ai.batch.duplicates");
+        meterRegistry.gauge("ai.batch.running", runningJobs);
+        meterRegistry.gauge("ai.batch.queue", executor.getQueue(), q -> q.size());
+    }
+
+    public ResponseEntity<?> submit(String userId, AiQuizBatchRequest request) {
+        String invalid = validate(request);
+        if (invalid != null)
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(invalid);
+        try {
+            aiQuizService.checkAvailable();
+        } catch (GeminiUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds())).body(e.getMessage());
+        }
+        if (runningJobs.incrementAndGet() > maxJobs) {
+            runningJobs.decrementAndGet();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30")
+                    .body("Too many batch generations in progress, try again");
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        List<AiQuizBatchRequest.Topic> topics = request.getTopics();
+        for (int t = 0; t < topics.size(); t++) {
+            int total = topics.get(t).getCount();
+            int parts = (total + chunkSize - 1) / chunkSize;
+            for (int part = 1; part <= parts; part++) {
+                // Spread the count evenly, so no chunk is left with one or two questions
+                int size = total / parts + (part <= total % parts ? 1 : 0);
+                chunks.add(new Chunk(t, topics.get(t).getTopic().trim(), size, part, parts));
+            }
+        }
+        Job job = new Job(userId, request, chunks);
+        jobs.put(job.id, job);
+
+        long startedAt = System.nanoTime();
+        CompletableFuture<?>[] running = new CompletableFuture<?>[chunks.size()];
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            try {
+                running[i] = CompletableFuture.runAsync(() -> run(job, chunk), executor);
+            } catch (RejectedExecutionException e) {
+                // Only when shutting down, as the queue holds every admitted chunk
+                job.errors.add(error(chunk, "generation is unavailable, try again"));
+                job.completedChunks.incrementAndGet();
+                running[i] = CompletableFuture.completedFuture(null);
+            }
+        }
+        CompletableFuture.allOf(running).whenComplete((done, e) -> {
+            try {
+                merge(job);
+            } finally {
+                runningJobs.decrementAndGet();
+                jobTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            }
+        });
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.id);
+        body.put("status", job.status);
+        body.put("totalChunks", chunks.size());
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.LOCATION, "/quiz/generate-ai/batch/" + job.id).body(body);
+    }
+
+    /** Progress of a job; once it is done, also its questions and how many each topic got. */
+    public ResponseEntity<?> status(String userId, String jobId) {
+        Job job = jobs.getIfPresent(jobId);
+        if (job == null || !job.userId.equals(userId))
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.id);
+        body.put("status", job.status);
+        body.put("completedChunks", job.completedChunks.get());
+        body.put("totalChunks", job.chunks.size());
+        if (job.questions != null) {
+            body.put("topics", job.topics);
+            body.put("questions", job.questions);
+        }
+        synchronized (job.errors) {
+            body.put("errors", new ArrayList<>(job.errors));
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    private String validate(AiQuizBatchRequest request) {
+        if (request == null || request.getTopics() == null || request.getTopics().isEmpty())
+            return "At least one topic is required";
+        int total = 0;
+        for (AiQuizBatchRequest.Topic topic : request.getTopics()) {
+            if (topic == null || !StringUtils.hasText(topic.getTopic()))
+                return "Every topic needs a name";
+            if (topic.getCount() <= 0)
+                return "Question counts must be positive";
+            total += topic.getCount();
+            if (total > maxQuestions)
+                return "A batch can have at most " + maxQuestions + " questions";
+        }
+        return null;
+    }
+
+    private void run(Job job, Chunk chunk) {
+        AiQuizBatchRequest request = job.request;
+        AiQuizRequest prompt = new AiQuizRequest(request.getGrade(), request.getDifficulty(), request.getSubject(),
+                chunk.topic);
+        try {
+            chunk.questions = aiQuizService.generateChunk(prompt, chunk.count, chunk.part, chunk.parts);
+        } catch (RuntimeException e) {
+            job.errors.add(error(chunk, e.getMessage()));
+        } finally {
+            job.completedChunks.incrementAndGet();
+        }
+    }
+
+    private static String error(Chunk chunk, String message) {
+        return "Topic '" + chunk.topic + "' part " + chunk.part + " of " + chunk.parts + ": " + message;
+    }
+
+    /** Joins the chunks in request order, dropping repeated questions, and numbers the result. */
+    private void merge(Job job) {
+        List<AiQuizBatchRequest.Topic> topics = job.request.getTopics();
+        int[] generated = new int[topics.size()];
+        Set<String> seen = new HashSet<>();
+        List<Question> questions = new ArrayList<>();
+        boolean anySucceeded = false;
+        for (Chunk chunk : job.chunks) {
+            anySucceeded |= !chunk.questions.isEmpty();
+            for (Question question : chunk.questions) {
+                if (!seen.add(dedupeKey(question.getQuestion()))) {
+                    duplicates.increment();
+                    continue;
+                }
+                question.setQuestionNo(String.valueOf(questions.size() + 1));
+                questions.add(question);
+                generated[chunk.topicIndex]++;
+            }
+        }
+        List<Map<String, Object>> summary = new ArrayList<>(topics.size());
+        for (int t = 0; t < topics.size(); t++) {
+            Map<String, Object> topic = new LinkedHashMap<>();
+            topic.put("topic", topics.get(t).getTopic());
+            topic.put("requested", topics.get(t).getCount());
+            topic.put("generated", generated[t]);
+            summary.add(topic);
+        }
+        job.topics = summary;
+        job.questions = questions;
+        job.status = anySucceeded ? "DONE" : "FAILED";
+        // Restart the retention period from completion
+        jobs.put(job.id, job);
+    }
+
+    /** Question text compared without case, punctuation or spacing differences. */
+    private static String dedupeKey(String text) {
+        StringBuilder key = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c))
+                key.append(Character.toLowerCase(c));
+        }
+        return key.toString();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -4,89 +4,421 @@ import com.quizapp.dto.AiQuizRequest;
 import com.quizapp.models.Question;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.http.MediaType;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.annotation.PreDestroy;
 
 @Service
 public class AiQuizService {
 
-    @Value("${gemini.api.key:}")
-    private String geminiApiKey;
+    private static final Logger log = LoggerFactory.getLogger(AiQuizService.class);
+    private static final int MAX_QUESTIONS = 5;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String GEMINI_API_URL = "https://generativelanguage.googleapis.com/v1/models/gemini-1.5-flash:generateContent";
+    /**
+     * A streaming generation in flight. Identical streaming requests watch it,
+     * getting the questions emitted so far and then each new one. Identical
+     * plain requests pin it, since they wait for its result in the cache. It is
+     * cancelled, stopping the upstream call, once no watcher is left and
+     * nothing pinned it.
+     */
+    private static final class Stream {
+        final CompletableFuture<List<Question>> result = new CompletableFuture<>();
+        final GeminiClient.Cancellation cancellation = new GeminiClient.Cancellation();
+        private final List<Question> emitted = new ArrayList<>();
+        private final List<Watcher> watchers = new ArrayList<>();
+        private boolean pinned;
+        private boolean abandoned;
 
-    public List<Question> generateQuiz(AiQuizRequest request) {
-        try {
-            if (geminiApiKey == null || geminiApiKey.trim().isEmpty()) {
-                throw new RuntimeException(
-                        "Gemini API key is not configured. Please set GEMINI_API_KEY environment variable.");
+        /** Adds a watcher and replays what was emitted so far; null if the stream was already abandoned. */
+        Watcher watch(Consumer<Question> onQuestion) {
+            Watcher watcher = new Watcher(onQuestion);
+            synchronized (this) {
+                if (abandoned)
+                    return null;
+                emitted.forEach(watcher::offer);
+                watchers.add(watcher);
             }
+            if (!watcher.send())
+                unwatch(watcher);
+            return watcher;
+        }
 
-            String prompt = buildPrompt(request);
-            String content = callGeminiApi(prompt);
+        synchronized boolean pin() {
+            if (abandoned)
+                return false;
+            pinned = true;
+            return true;
+        }
 
-            return parseQuizResponse(content);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate quiz: " + e.getMessage(), e);
+        /** Passes a question to every watcher, dropping those that fail, such as closed connections. */
+        void emit(Question question) {
+            List<Watcher> current;
+            synchronized (this) {
+                emitted.add(question);
+                current = new ArrayList<>(watchers);
+                current.forEach(watcher -> watcher.offer(question));
+            }
+            for (Watcher watcher : current) {
+                if (!watcher.send())
+                    unwatch(watcher);
+            }
+        }
+
+        void unwatch(Watcher watcher) {
+            synchronized (this) {
+                watchers.remove(watcher);
+                if (!watchers.isEmpty() || pinned || abandoned || result.isDone())
+                    return;
+                abandoned = true;
+            }
+            cancellation.cancel();
         }
     }
 
-    private String callGeminiApi(String prompt) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+    /**
+     * One caller of a stream. Questions are queued under the stream's lock and
+     * sent outside it, by one thread at a time and in order, so a connection
+     * that is slow to write holds up neither the stream nor its other callers'
+     * joining and leaving.
+     */
+    private static final class Watcher {
+        private final Consumer<Question> onQuestion;
+        private final Queue<Question> pending = new ArrayDeque<>();
+        private boolean sending;
+        private boolean failed;
 
-        Map<String, Object> requestBody = new HashMap<>();
-        Map<String, Object> content = new HashMap<>();
-        Map<String, Object> part = new HashMap<>();
-        part.put("text", prompt);
+        Watcher(Consumer<Question> onQuestion) {
+            this.onQuestion = onQuestion;
+        }
+
+        synchronized void offer(Question question) {
+            if (!failed)
+                pending.add(question);
+        }
 
-        List<Map<String, Object>> parts = new ArrayList<>();
-        parts.add(part);
-        content.put("parts", parts);
+        /** Sends what is queued unless another thread is doing so; false once a send failed. */
+        boolean send() {
+            synchronized (this) {
+                if (sending || failed)
+                    return !failed;
+                sending = true;
+            }
+            while (true) {
+                Question next;
+                synchronized (this) {
+                    next = pending.poll();
+                    if (next == null) {
+                        sending = false;
+                        return true;
+                    }
+                }
+                try {
+                    onQuestion.accept(next);
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        failed = true;
+                        sending = false;
+                        pending.clear();
+                    }
+                    return false;
+                }
+            }
+        }
+    }
 
-        List<Map<String, Object>> contents = new ArrayList<>();
-        contents.add(content);
-        requestBody.put("contents", contents);
+    private final GeminiClient geminiClient;
+    private final Duration timeout;
+    private final ThreadPoolExecutor executor;
+    private final Timer generateTime;
+    private final Counter rejected;
+    private final AsyncCache<String, List<Question>> generated;
+    private final Counter saved;
+    private final Timer firstQuestionTime;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, Stream> streams = new ConcurrentHashMap<>();
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+    public AiQuizService(GeminiClient geminiClient,
+            @Value("${ai.generate.concurrency:4}") int concurrency,
+            @Value("${ai.generate.queue-capacity:8}") int queueCapacity,
+            @Value("${ai.generate.timeout:30s}") Duration timeout,
+            @Value("${ai.generate.cache.max-size:1000}") long cacheMaxSize,
+            @Value("${ai.generate.cache.ttl:30m}") Duration cacheTtl,
+            MeterRegistry meterRegistry) {
+        this.geminiClient = geminiClient;
+        this.timeout = timeout;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "ai-generate-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.generateTime = meterRegistry.timer("ai.generate");
+        this.rejected = meterRegistry.counter("ai.generate.rejected");
+        meterRegistry.gauge("ai.generate.queue", executor.getQueue(), q -> q.size());
+        meterRegistry.gauge("ai.generate.active", executor, ThreadPoolExecutor::getActiveCount);
+        this.generated = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, generated, "aiQuizzes");
+        this.saved = meterRegistry.counter("ai.generate.saved");
+        this.firstQuestionTime = meterRegistry.timer("ai.generate.first-question");
+        this.meterRegistry = meterRegistry;
+    }
 
-        String url = GEMINI_API_URL + "?key=" + geminiApiKey;
+    /** How long a caller should wait for {@link #generateQuizAsync} before giving up. */
+    public Duration getTimeout() {
+        return timeout;
+    }
 
-        ResponseEntity<Map> response = restTemplate.exchange(
-                url,
-                HttpMethod.POST,
-                entity,
-                Map.class);
+    /**
+     * Generates a quiz on the generation pool, which caps the number of concurrent
+     * upstream calls. Results are cached by the normalized (grade, difficulty,
+     * subject, topic) tuple, and identical requests arriving while one is in
+     * flight share its call. With {@code fresh}, the cache is bypassed and its
+     * entry replaced by the new result.
+     *
+     * Throws {@link RejectedExecutionException} at once when an upstream call is
+     * needed and the pool and its queue are full, and {@link GeminiUnavailableException}
+     * when one is needed while the upstream circuit breaker is open. Cancelling the returned future
+     * only skips the upstream call for fresh requests; otherwise the call goes on
+     * for the callers sharing it and to fill the cache.
+     */
+    public CompletableFuture<List<Question>> generateQuizAsync(AiQuizRequest request, boolean fresh) {
+        String key = cacheKey(request);
+        if (fresh) {
+            CompletableFuture<List<Question>> generation = submit(request);
+            generation.thenAccept(questions -> {
+                if (!questions.isEmpty())
+                    generated.put(key, CompletableFuture.completedFuture(questions));
+            });
+            return generation;
+        }
+        Stream stream = streams.get(key);
+        // Waits for a streaming generation through the cache, so it must now run to the end
+        if (stream != null && !stream.pin())
+            generated.asMap().remove(key, stream.result);
+        boolean[] loaded = new boolean[1];
+        CompletableFuture<List<Question>> shared = generated.get(key, (k, e) -> {
+            loaded[0] = true;
+            return submit(request);
+        });
+        // Failed calls, including responses without a usable question, are dropped by the cache itself
+        if (!loaded[0])
+            saved.increment();
+        // A view of its own for each caller, so one timing out does not cancel the rest
+        return shared.thenApply(Function.identity());
+    }
 
-        Map<String, Object> responseBody = response.getBody();
-        if (responseBody != null && responseBody.containsKey("candidates")) {
-            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
-            if (!candidates.isEmpty()) {
-                Map<String, Object> candidate = candidates.get(0);
-                Map<String, Object> contentResponse = (Map<String, Object>) candidate.get("content");
-                List<Map<String, Object>> partsResponse = (List<Map<String, Object>>) contentResponse.get("parts");
-                if (!partsResponse.isEmpty()) {
-                    return (String) partsResponse.get(0).get("text");
+    /**
+     * Streaming variant of {@link #generateQuizAsync}: each question is passed to
+     * onQuestion as soon as its block is complete in the model's streamed output,
+     * and the future completes with all of them. Identical requests share one
+     * upstream call: a cached or pending quiz is replayed when ready, and a
+     * running stream is joined. Cancelling the returned future stops passing
+     * questions, and stops the upstream call when no other caller waits for it.
+     */
+    public CompletableFuture<List<Question>> streamQuizAsync(AiQuizRequest request, Consumer<Question> onQuestion) {
+        String key = cacheKey(request);
+        while (true) {
+            Stream running = streams.get(key);
+            if (running != null) {
+                Watcher watcher = running.watch(onQuestion);
+                if (watcher != null) {
+                    saved.increment();
+                    return watch(running, watcher);
                 }
+                // Abandoned, so its result in the cache is about to be cancelled
+                streams.remove(key, running);
+                generated.asMap().remove(key, running.result);
+                continue;
+            }
+            CompletableFuture<List<Question>> cached = generated.getIfPresent(key);
+            if (cached != null && !cached.isCompletedExceptionally()) {
+                saved.increment();
+                return cached.thenApply(questions -> {
+                    questions.forEach(onQuestion);
+                    return questions;
+                });
             }
+            geminiClient.checkAvailable();
+            Stream stream = new Stream();
+            Watcher watcher = stream.watch(onQuestion);
+            // Cached before it is published, so whoever pins it finds its result there
+            if (streams.compute(key, (k, current) -> {
+                if (current != null)
+                    return current;
+                generated.put(key, stream.result);
+                return stream;
+            }) != stream)
+                continue;
+            // Failed or cancelled streams drop out of the cache by themselves
+            stream.result.whenComplete((questions, e) -> {
+                streams.remove(key, stream);
+                if (e != null && !(e instanceof CancellationException))
+                    log.warn("Streaming AI quiz generation failed: {}", e.getMessage());
+            });
+            long submittedAt = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    try {
+                        stream.result.complete(streamQuiz(request, submittedAt, stream));
+                    } catch (RuntimeException e) {
+                        stream.result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Fails whoever joined or pinned it meanwhile too
+                stream.result.completeExceptionally(e);
+                rejected.increment();
+                throw e;
+            }
+            return watch(stream, watcher);
+        }
+    }
+
+    /** A view of the stream's result for one watcher; cancelling it removes the watcher. */
+    private static CompletableFuture<List<Question>> watch(Stream stream, Watcher watcher) {
+        CompletableFuture<List<Question>> view = stream.result.thenApply(Function.identity());
+        view.whenComplete((questions, e) -> {
+            if (e instanceof CancellationException)
+                stream.unwatch(watcher);
+        });
+        return view;
+    }
+
+    private List<Question> streamQuiz(AiQuizRequest request, long submittedAt, Stream stream) {
+        if (!geminiClient.isConfigured()) {
+            throw new RuntimeException(
+                    "Gemini API key is not configured. Please set GEMINI_API_KEY environment variable.");
+        }
+        QuizStreamParser parser = new QuizStreamParser(MAX_QUESTIONS);
+        List<Question> questions = new ArrayList<>();
+        Consumer<Question> emit = question -> {
+            if (questions.isEmpty())
+                firstQuestionTime.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            questions.add(question);
+            stream.emit(question);
+        };
+        generateTime.record(() -> {
+            geminiClient.streamContent(buildPrompt(request), text -> parser.accept(text).forEach(emit),
+                    stream.cancellation);
+            parser.finish().forEach(emit);
+        });
+        return Collections.unmodifiableList(checkParsed(questions, parser));
+    }
+
+    /**
+     * Generates one part of a larger quiz on the calling thread, bypassing the
+     * generation pool and the cache. Used by batch jobs, which run on their own pool.
+     */
+    List<Question> generateChunk(AiQuizRequest request, int count, int part, int parts) {
+        if (!geminiClient.isConfigured()) {
+            throw new RuntimeException(
+                    "Gemini API key is not configured. Please set GEMINI_API_KEY environment variable.");
         }
+        return parseQuizResponse(geminiClient.generateContent(buildPrompt(request, count, part, parts)), count);
+    }
+
+    /** Generates on the pool without consulting or filling the cache, for sets handed out once. */
+    CompletableFuture<List<Question>> generateUncached(AiQuizRequest request) {
+        return submit(request);
+    }
+
+    /** Throws {@link GeminiUnavailableException} while the upstream circuit breaker is open. */
+    void checkAvailable() {
+        geminiClient.checkAvailable();
+    }
+
+    /** True when no generation is running or waiting. */
+    boolean isIdle() {
+        return executor.getActiveCount() == 0 && executor.getQueue().isEmpty();
+    }
+
+    private CompletableFuture<List<Question>> submit(AiQuizRequest request) {
+        geminiClient.checkAvailable();
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> Collections.unmodifiableList(generateTime.record(() -> generateQuiz(request))), executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    static String cacheKey(AiQuizRequest request) {
+        return normalize(request.getGrade()) + '\n' + normalize(request.getDifficulty()) + '\n'
+                + normalize(request.getSubject()) + '\n' + normalize(request.getTopic());
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public List<Question> generateQuiz(AiQuizRequest request) {
+        try {
+            if (!geminiClient.isConfigured()) {
+                throw new RuntimeException(
+                        "Gemini API key is not configured. Please set GEMINI_API_KEY environment variable.");
+            }
 
-        throw new RuntimeException("Invalid response from Gemini API");
+            String prompt = buildPrompt(request);
+            String content = geminiClient.generateContent(prompt);
+
+            return parseQuizResponse(content, MAX_QUESTIONS);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to generate quiz: " + e.getMessage(), e);
+        }
     }
 
     private String buildPrompt(AiQuizRequest request) {
+        return buildPrompt(request, MAX_QUESTIONS, 1, 1);
+    }
+
+    /** Prompt for count questions; part and parts tell the model which of several sets on a topic this is. */
+    private String buildPrompt(AiQuizRequest request, int count, int part, int parts) {
+        String variation = parts > 1
+                ? String.format(" This is set %d of %d on this topic: cover different aspects than the other sets.",
+                        part, parts)
+                : "";
         return String.format(
-                "Generate a quiz with 5 multiple choice questions for %s level, %s difficulty, on the subject '%s' and topic '%s'. "
+                "Generate a quiz with %d multiple choice questions for %s level, %s difficulty, on the subject '%s' and topic '%s'.%s "
                         +
                         "Format the response exactly as follows:\n\n" +
                         "Q1. [Question text]\n" +
@@ -103,75 +435,24 @@ public class AiQuizService {
                         "D) [Option D]\n" +
                         "Correct: [A/B/C/D]\n" +
                         "Points: 1\n\n" +
-                        "Continue for all 5 questions. Make sure the questions are appropriate for %s level and %s difficulty.",
-                request.getGrade(), request.getDifficulty(), request.getSubject(), request.getTopic(),
-                request.getGrade(), request.getDifficulty());
+                        "Continue for all %d questions. Make sure the questions are appropriate for %s level and %s difficulty.",
+                count, request.getGrade(), request.getDifficulty(), request.getSubject(), request.getTopic(), variation,
+                count, request.getGrade(), request.getDifficulty());
     }
 
-    private List<Question> parseQuizResponse(String content) {
-        List<Question> questions = new ArrayList<>();
-
-        // Split content by question blocks
-        String[] questionBlocks = content.split("Q\\d+\\.");
-
-        for (int i = 1; i < questionBlocks.length && i <= 5; i++) { // Skip first empty element
-            String block = questionBlocks[i].trim();
-            if (block.isEmpty())
-                continue;
-
-            try {
-                Question question = parseQuestionBlock(block, i);
-                questions.add(question);
-            } catch (Exception e) {
-                // Log error but continue with other questions
-                System.err.println("Error parsing question " + i + ": " + e.getMessage());
-            }
-        }
-
-        return questions;
+    private List<Question> parseQuizResponse(String content, int count) {
+        QuizStreamParser parser = new QuizStreamParser(count);
+        List<Question> questions = new ArrayList<>(parser.accept(content));
+        questions.addAll(parser.finish());
+        return checkParsed(questions, parser);
     }
 
-    private Question parseQuestionBlock(String block, int questionNumber) {
-        // Extract question text (everything before the first option)
-        String[] lines = block.split("\n");
-        String questionText = lines[0].trim();
-
-        // Extract options
-        String optionA = "", optionB = "", optionC = "", optionD = "";
-        String correctAnswer = "";
-        int points = 1;
-
-        for (String line : lines) {
-            line = line.trim();
-            if (line.startsWith("A)")) {
-                optionA = line.substring(2).trim();
-            } else if (line.startsWith("B)")) {
-                optionB = line.substring(2).trim();
-            } else if (line.startsWith("C)")) {
-                optionC = line.substring(2).trim();
-            } else if (line.startsWith("D)")) {
-                optionD = line.substring(2).trim();
-            } else if (line.startsWith("Correct:")) {
-                correctAnswer = line.substring(8).trim();
-            } else if (line.startsWith("Points:")) {
-                try {
-                    points = Integer.parseInt(line.substring(7).trim());
-                } catch (NumberFormatException e) {
-                    points = 1; // Default to 1 point
-                }
-            }
-        }
-
-        Question question = new Question();
-        question.setQuestionNo(String.valueOf(questionNumber));
-        question.setQuestion(questionText);
-        question.setOption1(optionA);
-        question.setOption2(optionB);
-        question.setOption3(optionC);
-        question.setOption4(optionD);
-        question.setCorrect(correctAnswer);
-        question.setPoints("1"); // Always set to 1 point for AI-generated quizzes
-
-        return question;
+    /** Counts the parser's errors, and fails when nothing usable was parsed at all. */
+    private List<Question> checkParsed(List<Question> questions, QuizStreamParser parser) {
+        for (QuizStreamParser.ParseError error : parser.errors())
+            meterRegistry.counter("ai.generate.parse-errors", "problem", error.getProblem().name()).increment();
+        if (questions.isEmpty())
+            throw new RuntimeException("No usable questions in the model's response " + parser.errors());
+        return questions;
     }
 }
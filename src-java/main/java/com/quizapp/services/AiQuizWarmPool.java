@@ -0,0 +1,207 @@
+package com.quizapp.services;
+
+import java.time.Duration;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.quizapp.dto.AiQuizRequest;
+import com.quizapp.models.Question;
+import com.quizapp.utils.SpaceSaving;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Pre-generated AI quizzes for the most requested (grade, difficulty, subject,
+ * topic) tuples. Demand is tracked with a bounded heavy-hitters sketch, and a
+ * background task keeps a few distinct question sets ready for each of the top
+ * tuples. Each set is handed out once, and dropped unserved after the max age
+ * so the pool does not hand out stale quizzes.
+ *
+ * Refills only run while no user generation is running or queued, and never
+ * make more upstream calls per hour than the configured budget. Off by default,
+ * since every pooled set costs an upstream call whether or not it is served.
+ */
+@Component
+public class AiQuizWarmPool {
+
+    private static final Logger log = LoggerFactory.getLogger(AiQuizWarmPool.class);
+    private static final long BUDGET_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final class PooledSet {
+        final List<Question> questions;
+        final long createdAt;
+
+        PooledSet(List<Question> questions, long createdAt) {
+            this.questions = questions;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final AiQuizService aiQuizService;
+    private final boolean enabled;
+    private final int topics;
+    private final int setsPerTopic;
+    private final long minRequests;
+    private final int budgetPerHour;
+    private final Duration decayInterval;
+    private final long maxAgeMillis;
+    private final SpaceSaving<String> demand;
+    private final ConcurrentMap<String, AiQuizRequest> requests = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Deque<PooledSet>> pool = new ConcurrentHashMap<>();
+    private final Counter served;
+    private final Counter missed;
+    private final Counter generated;
+    private final ScheduledExecutorService scheduler;
+
+    // Only touched by the refill task
+    private long windowStart;
+    private int windowCalls;
+    private long lastDecay = System.currentTimeMillis();
+
+    public AiQuizWarmPool(AiQuizService aiQuizService, MeterRegistry meterRegistry,
+            @Value("${ai.warm-pool.enabled:false}") boolean enabled,
+            @Value("${ai.warm-pool.topics:20}") int topics,
+            @Value("${ai.warm-pool.sets-per-topic:3}") int setsPerTopic,
+            @Value("${ai.warm-pool.min-requests:3}") long minRequests,
+            @Value("${ai.warm-pool.sketch-size:200}") int sketchSize,
+            @Value("${ai.warm-pool.budget-per-hour:60}") int budgetPerHour,
+            @Value("${ai.warm-pool.refill-interval:30s}") Duration refillInterval,
+            @Value("${ai.warm-pool.decay-interval:1h}") Duration decayInterval,
+            @Value("${ai.warm-pool.max-age:30m}") Duration maxAge) {
+        this.aiQuizService = aiQuizService;
+        this.enabled = enabled;
+        this.topics = topics;
+        this.setsPerTopic = setsPerTopic;
+        this.minRequests = minRequests;
+        this.budgetPerHour = budgetPerHour;
+        this.decayInterval = decayInterval;
+        this.maxAgeMillis = maxAge.toMillis();
+        this.demand = new SpaceSaving<>(sketchSize);
+        this.served = meterRegistry.counter("ai.warm-pool.requests", "outcome", "served");
+        this.missed = meterRegistry.counter("ai.warm-pool.requests", "outcome", "missed");
+        this.generated = meterRegistry.counter("ai.warm-pool.generated");
+        meterRegistry.gauge("ai.warm-pool.sets", pool, p -> p.values().stream().mapToInt(Deque::size).sum());
+        meterRegistry.gauge("ai.warm-pool.topics", pool, p -> p.size());
+        if (enabled) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ai-warm-pool");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::refill, refillInterval.toMillis(), refillInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /** Counts the request towards its tuple's popularity and hands out a pooled set for it, if one is ready. */
+    public Optional<List<Question>> take(AiQuizRequest request) {
+        if (!enabled)
+            return Optional.empty();
+        String key = AiQuizService.cacheKey(request);
+        String evicted = demand.offer(key);
+        if (evicted != null)
+            requests.remove(evicted);
+        requests.putIfAbsent(key, request);
+        Deque<PooledSet> sets = pool.get(key);
+        long now = System.currentTimeMillis();
+        PooledSet set;
+        do {
+            set = sets == null ? null : sets.pollFirst();
+        } while (set != null && isStale(set, now));
+        if (set == null) {
+            missed.increment();
+            return Optional.empty();
+        }
+        served.increment();
+        return Optional.of(set.questions);
+    }
+
+    /** One pass of the background task, run every refill interval. */
+    void refill() {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - lastDecay >= decayInterval.toMillis()) {
+                demand.decay();
+                lastDecay = now;
+            }
+            Set<String> tracked = new HashSet<>(demand.top(Integer.MAX_VALUE, Long.MIN_VALUE));
+            requests.keySet().retainAll(tracked);
+            List<String> hot = demand.top(topics, minRequests);
+            pool.keySet().retainAll(new HashSet<>(hot));
+            pool.values().forEach(sets -> sets.removeIf(set -> isStale(set, now)));
+            for (String key : hot) {
+                AiQuizRequest request = requests.get(key);
+                Deque<PooledSet> sets = pool.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+                if (request == null || sets.size() >= setsPerTopic)
+                    continue;
+                // Users come first, and the budget caps what idle time may spend
+                if (!aiQuizService.isIdle() || !withinBudget(System.currentTimeMillis()))
+                    return;
+                List<Question> questions = aiQuizService.generateUncached(request).join();
+                generated.increment();
+                if (!questions.isEmpty() && !isDuplicate(sets, questions))
+                    sets.addLast(new PooledSet(questions, System.currentTimeMillis()));
+            }
+        } catch (RejectedExecutionException e) {
+            // Users filled the generation pool meanwhile; try again on the next tick
+        } catch (RuntimeException e) {
+            // Thrown directly when the breaker is already open, or wrapped when a generation hit it
+            if (GeminiUnavailableException.find(e) != null)
+                return;
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("AI quiz warm pool refill failed: {}", cause.getMessage());
+        }
+    }
+
+    private boolean withinBudget(long now) {
+        if (now - windowStart >= BUDGET_WINDOW_MILLIS) {
+            windowStart = now;
+            windowCalls = 0;
+        }
+        if (windowCalls >= budgetPerHour)
+            return false;
+        windowCalls++;
+        return true;
+    }
+
+    private boolean isStale(PooledSet set, long now) {
+        return now - set.createdAt >= maxAgeMillis;
+    }
+
+    /** The model sometimes repeats itself; a set whose first question is already pooled adds nothing. */
+    private static boolean isDuplicate(Deque<PooledSet> sets, List<Question> questions) {
+        String first = questions.get(0).getQuestion();
+        for (PooledSet set : sets) {
+            if (!set.questions.isEmpty() && set.questions.get(0).getQuestion().equals(first))
+                return true;
+        }
+        return false;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null)
+            scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,76 @@
+package com.quizapp.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.quizapp.models.Question;
+import com.quizapp.repository.QuestionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded cache of compiled answer keys by quizId. Questions are immutable once
+ * a quiz is created, so grading only reads the database on a miss. Hit, miss
+ * and eviction counts are published as the "answerKeys" cache metrics.
+ */
+@Component
+public class AnswerKeyCache {
+
+	private final QuestionRepository questionRepo;
+	private final Cache<String, CompiledAnswerKey> cache;
+
+	public AnswerKeyCache(QuestionRepository questionRepo, MeterRegistry meterRegistry,
+			@Value("${quiz.grading.cache.max-size:10000}") long maxSize,
+			@Value("${quiz.grading.cache.expire-after-access:30m}") Duration expireAfterAccess) {
+		this.questionRepo = questionRepo;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterAccess(expireAfterAccess)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "answerKeys");
+	}
+
+	/** Returns the answer key of a quiz, or null if the quiz has no questions. */
+	public CompiledAnswerKey get(String quizId) {
+		return cache.get(quizId, this::load);
+	}
+
+	/**
+	 * Caches the key of a freshly created quiz once the surrounding transaction
+	 * commits, so a rolled back creation never becomes gradable.
+	 */
+	public void populate(String quizId, List<Question> questions) {
+		CompiledAnswerKey key = CompiledAnswerKey.fromQuestions(questions);
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			cache.put(quizId, key);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				cache.put(quizId, key);
+			}
+		});
+	}
+
+	public void invalidate(String quizId) {
+		cache.invalidate(quizId);
+	}
+
+	private CompiledAnswerKey load(String quizId) {
+		List<Map<String, Object>> rows = questionRepo.findAnswerKeyByQuizId(quizId);
+		if (rows.isEmpty())
+			return null;
+		return CompiledAnswerKey.fromRows(rows);
+	}
+}
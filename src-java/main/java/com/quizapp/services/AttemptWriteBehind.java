@@ -0,0 +1,253 @@
+package com.quizapp.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.quizapp.models.AttemptedQuiz;
+import com.quizapp.repository.AttemptedQuizRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Optional write-behind persistence of graded attempts. When enabled, submissions
+ * are queued in a bounded in-memory queue and a single flusher thread writes them
+ * in JDBC batches, so a burst of submissions costs a handful of round trips
+ * instead of one transaction per request.
+ *
+ * A user's attempt at a quiz is accepted once: a submission is refused while
+ * the same attempt is queued or already stored, so every graded response is
+ * one that gets written.
+ *
+ * A batch that keeps failing is written again one attempt at a time, so a single
+ * bad row does not take the rest with it. Attempts that still cannot be written
+ * are counted as dropped and logged.
+ *
+ * The queue is drained on graceful shutdown, after the web server has stopped
+ * taking requests; failed writes are retried until the shutdown phase times
+ * out. Attempts still queued when the JVM is killed are lost, which is why this
+ * mode is off by default.
+ */
+@Component
+public class AttemptWriteBehind implements SmartLifecycle {
+
+	private static final Logger log = LoggerFactory.getLogger(AttemptWriteBehind.class);
+	private static final int MAX_FLUSH_ATTEMPTS = 3;
+	private static final long RETRY_BACKOFF_MILLIS = 200;
+
+	public enum Enqueued {
+		QUEUED, DUPLICATE, REJECTED
+	}
+
+	private final AttemptedQuizRepository attemptRepo;
+	private final TransactionTemplate transactionTemplate;
+	private final boolean enabled;
+	private final int batchSize;
+	private final Duration flushInterval;
+	private final Duration offerTimeout;
+	private final BlockingQueue<AttemptedQuiz> queue;
+	// Keys of the attempts queued or being written
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	private final Timer flushTimer;
+	private final Counter flushedCounter;
+	private final Counter rejectedCounter;
+	private final Counter droppedCounter;
+	private final Duration drainTimeout;
+
+	private volatile boolean running;
+	private volatile boolean draining;
+	private volatile long drainDeadline;
+	private Thread flusher;
+
+	public AttemptWriteBehind(AttemptedQuizRepository attemptRepo, TransactionTemplate transactionTemplate,
+			MeterRegistry meterRegistry,
+			@Value("${quiz.submit.write-behind.enabled:false}") boolean enabled,
+			@Value("${quiz.submit.write-behind.queue-capacity:10000}") int queueCapacity,
+			@Value("${quiz.submit.write-behind.batch-size:200}") int batchSize,
+			@Value("${quiz.submit.write-behind.flush-interval:200ms}") Duration flushInterval,
+			@Value("${quiz.submit.write-behind.offer-timeout:50ms}") Duration offerTimeout,
+			@Value("${spring.lifecycle.timeout-per-shutdown-phase:30s}") Duration drainTimeout) {
+		this.attemptRepo = attemptRepo;
+		this.transactionTemplate = transactionTemplate;
+		this.enabled = enabled;
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.offerTimeout = offerTimeout;
+		// Leave some of the phase timeout for the rest of the shutdown
+		this.drainTimeout = drainTimeout.multipliedBy(4).dividedBy(5);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		meterRegistry.gauge("quiz.attempts.write_behind.queue", queue, BlockingQueue::size);
+		this.flushTimer = Timer.builder("quiz.attempts.write_behind.flush")
+				.description("Latency of one batched attempt flush")
+				.register(meterRegistry);
+		this.flushedCounter = meterRegistry.counter("quiz.attempts.write_behind.flushed");
+		this.rejectedCounter = meterRegistry.counter("quiz.attempts.write_behind.rejected");
+		this.droppedCounter = meterRegistry.counter("quiz.attempts.write_behind.dropped");
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Queues a graded attempt for persistence. Returns DUPLICATE when the user's
+	 * attempt at the quiz is already queued or stored, and REJECTED when the
+	 * queue stays full for the offer timeout, so the caller can shed load.
+	 */
+	public Enqueued enqueue(AttemptedQuiz attempt) {
+		if (!running) {
+			rejectedCounter.increment();
+			return Enqueued.REJECTED;
+		}
+		// Claimed before the database check: the flusher releases a key only once its row is committed
+		String key = key(attempt);
+		if (!pending.add(key))
+			return Enqueued.DUPLICATE;
+		boolean queued = false;
+		try {
+			if (attemptRepo.existsByUserIdAndQuizId(attempt.getUserId(), attempt.getQuizId()))
+				return Enqueued.DUPLICATE;
+			queued = queue.offer(attempt, offerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (!queued)
+				pending.remove(key);
+		}
+		if (queued)
+			return Enqueued.QUEUED;
+		rejectedCounter.increment();
+		return Enqueued.REJECTED;
+	}
+
+	@Override
+	public void start() {
+		if (!enabled)
+			return;
+		running = true;
+		flusher = new Thread(this::flushLoop, "attempt-write-behind");
+		flusher.start();
+	}
+
+	@Override
+	public void stop() {
+		if (!running)
+			return;
+		drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+		draining = true;
+		running = false;
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/** Stops after the web server's graceful shutdown so no submission is accepted after the final drain. */
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE - 4096;
+	}
+
+	private void flushLoop() {
+		List<AttemptedQuiz> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				AttemptedQuiz first = queue.poll(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				flush(batch);
+			} catch (InterruptedException e) {
+				// Only stop() ends the loop; the remaining queue is still drained
+			} finally {
+				for (AttemptedQuiz attempted : batch)
+					pending.remove(key(attempted));
+				batch.clear();
+			}
+		}
+	}
+
+	private void flush(List<AttemptedQuiz> batch) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				flushTimer.record(() -> write(batch));
+				flushedCounter.increment(batch.size());
+				return;
+			} catch (RuntimeException e) {
+				log.warn("Flushing {} attempts failed (try {})", batch.size(), attempt, e);
+				if (!retry(attempt))
+					break;
+			}
+		}
+		// Write the attempts one by one, so only those that cannot be stored are lost
+		for (AttemptedQuiz attempted : batch)
+			writeOne(attempted);
+	}
+
+	private void writeOne(AttemptedQuiz attempted) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				transactionTemplate.executeWithoutResult(status -> attemptRepo.insertIfAbsent(attempted));
+				flushedCounter.increment();
+				return;
+			} catch (RuntimeException e) {
+				if (!retry(attempt)) {
+					droppedCounter.increment();
+					log.error("Dropping attempt of {} on quiz {} ({} of {} points) after failed writes",
+							attempted.getUserId(), attempted.getQuizId(), attempted.getPoints(),
+							attempted.getTotalPoints(), e);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Whether to try a failed write again, after a pause: up to MAX_FLUSH_ATTEMPTS
+	 * times while running, and until the deadline while draining on shutdown.
+	 */
+	private boolean retry(int attempt) {
+		long pause = RETRY_BACKOFF_MILLIS * Math.min(attempt, 5);
+		boolean again = draining ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pause) < drainDeadline
+				: attempt < MAX_FLUSH_ATTEMPTS;
+		if (!again)
+			return false;
+		try {
+			Thread.sleep(pause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
+	private static String key(AttemptedQuiz attempt) {
+		return attempt.getQuizId() + '/' + attempt.getUserId();
+	}
+
+	private void write(List<AttemptedQuiz> batch) {
+		// enqueue refused resubmissions; insert-if-absent still keeps the first row if one raced in
+		transactionTemplate.executeWithoutResult(status -> attemptRepo.insertAllIfAbsent(batch));
+	}
+}
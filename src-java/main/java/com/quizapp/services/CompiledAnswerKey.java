@@ -0,0 +1,115 @@
+package com.quizapp.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.quizapp.models.Question;
+
+/**
+ * Immutable, compact answer key of a quiz. Slot i holds the question number,
+ * the correct option index (1-9, 0 when the stored answer is not an option
+ * index) and the points of one question; the total is computed once.
+ */
+public final class CompiledAnswerKey {
+
+	private static final byte NO_OPTION = 0;
+	/** Questions have option1..option4. */
+	private static final int OPTIONS = 4;
+
+	private final String[] questionNos;
+	private final byte[] correct;
+	private final int[] points;
+	private final int totalPoints;
+
+	private CompiledAnswerKey(String[] questionNos, byte[] correct, int[] points) {
+		this.questionNos = questionNos;
+		this.correct = correct;
+		this.points = points;
+		int total = 0;
+		for (int p : points)
+			total += p;
+		this.totalPoints = total;
+	}
+
+	/**
+	 * Compiles the rows returned by
+	 * {@link com.quizapp.repository.QuestionRepository#findAnswerKeyByQuizId}.
+	 */
+	public static CompiledAnswerKey fromRows(List<Map<String, Object>> rows) {
+		List<Entry> entries = new ArrayList<>(rows.size());
+		for (Map<String, Object> row : rows)
+			entries.add(new Entry((String) row.get("questionNo"), (String) row.get("correct"),
+					((Number) row.get("points")).intValue()));
+		return compile(entries);
+	}
+
+	public static CompiledAnswerKey fromQuestions(List<Question> questions) {
+		List<Entry> entries = new ArrayList<>(questions.size());
+		for (Question q : questions)
+			entries.add(new Entry(q.getQuestionNo(), q.getCorrect(), q.getPoints()));
+		return compile(entries);
+	}
+
+	private static final class Entry {
+		final String questionNo;
+		final String correct;
+		final int points;
+
+		Entry(String questionNo, String correct, int points) {
+			this.questionNo = questionNo;
+			this.correct = correct;
+			this.points = points;
+		}
+	}
+
+	private static CompiledAnswerKey compile(List<Entry> entries) {
+		entries.sort(Comparator.comparingInt((Entry e) -> e.questionNo.length()).thenComparing(e -> e.questionNo));
+		int n = entries.size();
+		String[] questionNos = new String[n];
+		byte[] correct = new byte[n];
+		int[] points = new int[n];
+		for (int i = 0; i < n; i++) {
+			Entry e = entries.get(i);
+			questionNos[i] = e.questionNo;
+			correct[i] = optionIndex(e.correct);
+			points[i] = e.points;
+		}
+		return new CompiledAnswerKey(questionNos, correct, points);
+	}
+
+	/**
+	 * Whether a stored correct answer can be graded: the option number "1" to
+	 * "4". New quizzes are checked with this, since any other value never scores.
+	 */
+	public static boolean isValidCorrect(String correct) {
+		byte option = optionIndex(correct);
+		return option != NO_OPTION && option <= OPTIONS;
+	}
+
+	private static byte optionIndex(String option) {
+		if (option == null || option.length() != 1)
+			return NO_OPTION;
+		char c = option.charAt(0);
+		return c >= '1' && c <= '9' ? (byte) (c - '0') : NO_OPTION;
+	}
+
+	/** Points earned by the given answers, keyed by question number. */
+	public int score(Map<String, String> answers) {
+		int earned = 0;
+		for (int i = 0; i < questionNos.length; i++) {
+			if (correct[i] != NO_OPTION && correct[i] == optionIndex(answers.get(questionNos[i])))
+				earned += points[i];
+		}
+		return earned;
+	}
+
+	public int getTotalPoints() {
+		return totalPoints;
+	}
+
+	public int getTotalQuestions() {
+		return questionNos.length;
+	}
+}
@@ -0,0 +1,607 @@
+package com.quizapp.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionReleaseTrigger;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.quizapp.utils.TokenBucket;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+
+/**
+ * Client for the Gemini generateContent API. Connections are pooled and kept
+ * alive, each attempt has connect, pool-wait and read timeouts, and 429, 5xx and
+ * I/O failures are retried with jittered exponential backoff while the total
+ * time budget allows. The budget bounds the whole call: each attempt's timeouts
+ * are capped to what is left of it, and an attempt still running when it runs
+ * out, such as a response trickling in, is aborted. Every attempt first takes a permit from a token bucket
+ * sized to the API quota, and fails with {@link GeminiUnavailableException} when
+ * none frees up within the budget.
+ *
+ * Attempts also go through a bulkhead, which caps concurrent upstream calls,
+ * and a circuit breaker, which opens when too many recent attempts failed or
+ * were slow. While it is open, calls fail at once with
+ * {@link GeminiUnavailableException} instead of waiting on a degraded API; after
+ * the open period a few probe calls decide whether it closes again. I/O errors,
+ * 429 and 5xx count as failures, other client errors do not. A streamed attempt
+ * is timed up to its first piece of text, since the length of the generation
+ * says nothing about the health of the API.
+ *
+ * Each attempt is timed as http.client.requests (uri tag /v1/models/{model}:generateContent),
+ * the whole call including retries as gemini.call (gemini.stream when streamed), and the pool is exposed as
+ * httpcomponents.httpclient.pool.* with the tag httpclient=gemini. The breaker and bulkhead are exposed as
+ * resilience4j.circuitbreaker.* and resilience4j.bulkhead.* with name=gemini, state changes as
+ * gemini.circuit.transitions and bulkhead rejections as gemini.bulkhead.rejected.
+ */
+@Component
+public class GeminiClient {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiClient.class);
+    private static final String GENERATE_PATH = "/v1/models/{model}:generateContent";
+    private static final String STREAM_PATH = "/v1/models/{model}:streamGenerateContent?alt=sse";
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long NOT_DELIVERED = Long.MIN_VALUE;
+    private static final String CIRCUIT_OPEN = "Gemini is failing or too slow, try again later";
+
+    private final String apiKey;
+    private final String baseUrl;
+    private final String model;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Duration totalTimeout;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final Duration maxBackoff;
+    private final MeterRegistry meterRegistry;
+    private final Timer callTime;
+    private final Timer streamTime;
+    private final ObjectMapper objectMapper;
+    private final TokenBucket rateLimit;
+    private final Timer rateLimitWait;
+    private final Counter rateLimited;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final long openSeconds;
+    private final RequestConfig requestConfig;
+    // The attempt running on the calling thread, so its request gets the remaining budget
+    private final ThreadLocal<Attempt> attempts = new ThreadLocal<>();
+    private final ScheduledThreadPoolExecutor deadlines;
+
+    /** One attempt of a call: its deadline, and its request once created, so that it can be aborted. */
+    private static final class Attempt {
+        final long deadline;
+        private HttpUriRequest request;
+        private boolean expired;
+
+        Attempt(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void started(HttpUriRequest request) {
+            synchronized (this) {
+                this.request = request;
+                if (!expired)
+                    return;
+            }
+            request.abort();
+        }
+
+        void expire() {
+            HttpUriRequest running;
+            synchronized (this) {
+                expired = true;
+                running = request;
+            }
+            if (running != null)
+                running.abort();
+        }
+    }
+
+    public GeminiClient(RestTemplateBuilder restTemplateBuilder, MeterRegistry meterRegistry, ObjectMapper objectMapper,
+            @Value("${gemini.api.key:}") String apiKey,
+            @Value("${gemini.api.base-url:https://generativelanguage.googleapis.com}") String baseUrl,
+            @Value("${gemini.api.model:gemini-1.5-flash}") String model,
+            @Value("${gemini.http.max-connections:20}") int maxConnections,
+            @Value("${gemini.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${gemini.http.pool-timeout:2s}") Duration poolTimeout,
+            @Value("${gemini.http.read-timeout:20s}") Duration readTimeout,
+            @Value("${gemini.http.total-timeout:25s}") Duration totalTimeout,
+            @Value("${gemini.http.max-retries:2}") int maxRetries,
+            @Value("${gemini.http.retry-backoff:500ms}") Duration retryBackoff,
+            @Value("${gemini.http.max-backoff:5s}") Duration maxBackoff,
+            @Value("${gemini.rate-limit.requests-per-minute:60}") double requestsPerMinute,
+            @Value("${gemini.rate-limit.burst:10}") int burst,
+            @Value("${gemini.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${gemini.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${gemini.circuit-breaker.failure-rate:50}") float failureRate,
+            @Value("${gemini.circuit-breaker.slow-call-duration:10s}") Duration slowCallDuration,
+            @Value("${gemini.circuit-breaker.slow-call-rate:80}") float slowCallRate,
+            @Value("${gemini.circuit-breaker.open-duration:30s}") Duration openDuration,
+            @Value("${gemini.circuit-breaker.half-open-calls:3}") int halfOpenCalls,
+            @Value("${gemini.bulkhead.max-concurrent-calls:16}") int maxConcurrentCalls,
+            @Value("${gemini.bulkhead.max-wait:1s}") Duration bulkheadWait) {
+        this.apiKey = apiKey;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.model = model;
+        this.totalTimeout = totalTimeout;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.maxBackoff = maxBackoff;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+
+        PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(maxConnections);
+        connections.setDefaultMaxPerRoute(maxConnections);
+        connections.setValidateAfterInactivity(2000);
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setConnectionRequestTimeout((int) poolTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(requestConfig)
+                // Retries happen in generateContent, with backoff and a budget
+                .disableAutomaticRetries()
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        this.restTemplate = restTemplateBuilder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient) {
+                    @Override
+                    protected void postProcessHttpRequest(HttpUriRequest request) {
+                        Attempt attempt = attempts.get();
+                        if (attempt != null)
+                            attempt.started(request);
+                    }
+
+                    @Override
+                    protected HttpContext createHttpContext(HttpMethod method, URI uri) {
+                        return budgetContext();
+                    }
+                })
+                .build();
+        this.deadlines = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "gemini-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+        deadlines.setRemoveOnCancelPolicy(true);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connections, "gemini").bindTo(meterRegistry);
+        this.callTime = meterRegistry.timer("gemini.call");
+        this.streamTime = meterRegistry.timer("gemini.stream");
+        // Shared by every call, so batch, warm-pool and user generations together stay within the quota
+        this.rateLimit = requestsPerMinute > 0 ? new TokenBucket(Math.max(1, burst), requestsPerMinute / 60) : null;
+        this.rateLimitWait = meterRegistry.timer("gemini.rate-limit.wait");
+        this.rateLimited = meterRegistry.counter("gemini.rate-limit.rejected");
+
+        CircuitBreakerRegistry breakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(windowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRate)
+                .slowCallDurationThreshold(slowCallDuration)
+                .slowCallRateThreshold(slowCallRate)
+                .waitDurationInOpenState(openDuration)
+                // So that checkAvailable sees the half-open state without a call having to try first
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .recordException(GeminiClient::isUpstreamFailure)
+                // The caller went away; says nothing about the upstream
+                .ignoreExceptions(CancellationException.class, UncheckedIOException.class)
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(bulkheadWait)
+                .build());
+        this.circuitBreaker = breakers.circuitBreaker("gemini");
+        this.bulkhead = bulkheads.bulkhead("gemini");
+        this.openSeconds = Math.max(1, openDuration.getSeconds());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(breakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            CircuitBreaker.StateTransition transition = event.getStateTransition();
+            meterRegistry.counter("gemini.circuit.transitions", "from", transition.getFromState().name(),
+                    "to", transition.getToState().name()).increment();
+            log.warn("Gemini circuit breaker {} to {}", transition.getFromState(), transition.getToState());
+        });
+        Counter bulkheadRejected = meterRegistry.counter("gemini.bulkhead.rejected");
+        bulkhead.getEventPublisher().onCallRejected(event -> bulkheadRejected.increment());
+    }
+
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.trim().isEmpty();
+    }
+
+    /**
+     * Throws {@link GeminiUnavailableException} while the circuit breaker is open,
+     * so callers can refuse work before queueing it.
+     */
+    public void checkAvailable() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        if (state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN)
+            return;
+        // Asking the breaker counts the refusal in its not-permitted metric
+        if (!circuitBreaker.tryAcquirePermission())
+            throw new GeminiUnavailableException(CIRCUIT_OPEN, openSeconds, null);
+        // It went half-open meanwhile; leave the probe permit to the actual call
+        circuitBreaker.releasePermission();
+    }
+
+    /** Sends a single-turn prompt and returns the text of the first candidate. */
+    @SuppressWarnings("unchecked")
+    public String generateContent(String prompt) {
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody(prompt), headers());
+        Map<String, Object> responseBody = callTime.record(() -> withRetries(() -> {
+            ResponseEntity<Map> response = restTemplate.exchange(baseUrl + GENERATE_PATH, HttpMethod.POST,
+                    entity, Map.class, model);
+            return response.getBody();
+        }, new AtomicLong(NOT_DELIVERED)));
+        return extractText(responseBody);
+    }
+
+    /**
+     * Stops a streamed call from another thread. A call that has not started
+     * yet is skipped; one that is reading has its connection aborted, so the
+     * reading thread is freed at once rather than at the read timeout. Either
+     * way the call throws {@link CancellationException}.
+     */
+    public static final class Cancellation {
+        private boolean cancelled;
+        private Runnable abort;
+
+        public void cancel() {
+            Runnable running;
+            synchronized (this) {
+                if (cancelled)
+                    return;
+                cancelled = true;
+                running = abort;
+            }
+            if (running != null)
+                running.run();
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Sets what cancel() runs while a response is being read, or null once it is not. */
+        void onCancel(Runnable abort) {
+            synchronized (this) {
+                this.abort = abort;
+                if (!cancelled || abort == null)
+                    return;
+            }
+            abort.run();
+        }
+    }
+
+    /**
+     * Sends a single-turn prompt to the streaming endpoint and passes each piece
+     * of generated text to onText as its server-sent event arrives. Failures are
+     * retried like {@link #generateContent} until the first piece is delivered,
+     * and not after, so no text is ever passed twice. Cancelling stops the call
+     * with {@link CancellationException}.
+     */
+    public void streamContent(String prompt, Consumer<String> onText, Cancellation cancellation) {
+        RequestCallback request = restTemplate.httpEntityCallback(new HttpEntity<>(requestBody(prompt), headers()));
+        AtomicLong delivered = new AtomicLong(NOT_DELIVERED);
+        Consumer<String> deliver = text -> {
+            delivered.compareAndSet(NOT_DELIVERED, System.nanoTime());
+            onText.accept(text);
+        };
+        streamTime.record(() -> withRetries(() -> {
+            if (cancellation.isCancelled())
+                throw new CancellationException("Gemini stream cancelled");
+            return restTemplate.execute(baseUrl + STREAM_PATH, HttpMethod.POST, request, response -> {
+                InputStream body = response.getBody();
+                cancellation.onCancel(() -> abort(body));
+                try {
+                    readEvents(body, deliver);
+                } catch (IOException e) {
+                    if (cancellation.isCancelled())
+                        throw new CancellationException("Gemini stream cancelled");
+                    throw e;
+                } finally {
+                    cancellation.onCancel(null);
+                }
+                return null;
+            }, model);
+        }, delivered));
+    }
+
+    /** Closes the connection under a response body, failing a read blocked on it. */
+    private static void abort(InputStream body) {
+        try {
+            if (body instanceof ConnectionReleaseTrigger)
+                ((ConnectionReleaseTrigger) body).abortConnection();
+            else
+                body.close();
+        } catch (IOException e) {
+            // Closed either way
+        }
+    }
+
+    private HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("x-goog-api-key", apiKey);
+        return headers;
+    }
+
+    /** Reads a text/event-stream body, passing the text of every data event on. */
+    private void readEvents(InputStream body, Consumer<String> onText) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                dispatch(data, onText);
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0)
+                    data.append('\n');
+                data.append(line, line.charAt(5) == ' ' ? 6 : 5, line.length());
+            }
+        }
+        dispatch(data, onText);
+    }
+
+    private void dispatch(StringBuilder data, Consumer<String> onText) throws IOException {
+        if (data.length() == 0)
+            return;
+        JsonNode parts = objectMapper.readTree(data.toString()).path("candidates").path(0).path("content")
+                .path("parts");
+        data.setLength(0);
+        for (JsonNode part : parts) {
+            String text = part.path("text").asText("");
+            if (!text.isEmpty())
+                onText.accept(text);
+        }
+    }
+
+    /** Request timeouts capped to what is left of the running attempt's budget. */
+    private HttpContext budgetContext() {
+        Attempt attempt = attempts.get();
+        if (attempt == null)
+            return null;
+        int remaining = (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(attempt.deadline - System.nanoTime()));
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.copy(requestConfig)
+                .setConnectTimeout(Math.min(requestConfig.getConnectTimeout(), remaining))
+                .setConnectionRequestTimeout(Math.min(requestConfig.getConnectionRequestTimeout(), remaining))
+                .setSocketTimeout(Math.min(requestConfig.getSocketTimeout(), remaining))
+                .build());
+        return context;
+    }
+
+    /**
+     * Runs call through the bulkhead and circuit breaker, retrying 429, 5xx and
+     * I/O failures with backoff while attempts and the total budget allow, and as
+     * long as nothing was delivered yet. Rejections by either are not retried.
+     */
+    private <T> T withRetries(Supplier<T> call, AtomicLong delivered) {
+        long deadline = System.nanoTime() + totalTimeout.toNanos();
+        for (int attempt = 0;; attempt++) {
+            RestClientException failure;
+            long delayNanos;
+            String reason;
+            acquirePermit(deadline);
+            Attempt current = new Attempt(deadline);
+            attempts.set(current);
+            ScheduledFuture<?> expiry = deadlines.schedule(current::expire, deadline - System.nanoTime(),
+                    TimeUnit.NANOSECONDS);
+            try {
+                return bulkhead.executeSupplier(() -> breaker(call, delivered));
+            } catch (CallNotPermittedException e) {
+                throw new GeminiUnavailableException(CIRCUIT_OPEN, openSeconds, e);
+            } catch (BulkheadFullException e) {
+                throw new GeminiUnavailableException("Too many Gemini calls in progress, try again later", 1, e);
+            } catch (HttpStatusCodeException e) {
+                int status = e.getRawStatusCode();
+                if (status != 429 && status < 500)
+                    throw e;
+                failure = e;
+                reason = Integer.toString(status);
+                long retryAfter = retryAfterNanos(e.getResponseHeaders());
+                delayNanos = retryAfter >= 0 ? retryAfter : backoffNanos(attempt);
+            } catch (RestClientException e) {
+                if (!isIoFailure(e))
+                    throw e;
+                // Also failures while reading the body, such as an attempt aborted at the deadline
+                failure = e instanceof ResourceAccessException ? e
+                        : new ResourceAccessException("I/O error reading Gemini response: " + e.getCause().getMessage(),
+                                (IOException) e.getCause());
+                reason = "io";
+                delayNanos = backoffNanos(attempt);
+            } finally {
+                expiry.cancel(false);
+                attempts.remove();
+            }
+            if (delivered.get() != NOT_DELIVERED || attempt >= maxRetries || System.nanoTime() + delayNanos >= deadline)
+                throw failure;
+            meterRegistry.counter("gemini.retries", "reason", reason).increment();
+            log.debug("Gemini call failed ({}), retry {} in {} ms", reason, attempt + 1,
+                    TimeUnit.NANOSECONDS.toMillis(delayNanos));
+            try {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Runs one attempt through the circuit breaker, timed up to the first
+     * delivery when there was one, so a long stream is not taken for a slow call.
+     */
+    private <T> T breaker(Supplier<T> call, AtomicLong delivered) {
+        circuitBreaker.acquirePermission();
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess(elapsedNanos(start, delivered), TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            circuitBreaker.onError(elapsedNanos(start, delivered), TimeUnit.NANOSECONDS, e);
+            throw e;
+        }
+    }
+
+    private static long elapsedNanos(long start, AtomicLong delivered) {
+        long first = delivered.get();
+        return (first != NOT_DELIVERED ? first : System.nanoTime()) - start;
+    }
+
+    /** What the circuit breaker counts as a failed call: I/O errors, 429 and 5xx. */
+    private static boolean isUpstreamFailure(Throwable e) {
+        if (e instanceof HttpStatusCodeException) {
+            int status = ((HttpStatusCodeException) e).getRawStatusCode();
+            return status == 429 || status >= 500;
+        }
+        return isIoFailure(e);
+    }
+
+    private static boolean isIoFailure(Throwable e) {
+        return e instanceof ResourceAccessException
+                || e instanceof RestClientException && e.getCause() instanceof IOException;
+    }
+
+    /** Waits for the global request rate limit, for no longer than the call's budget allows. */
+    private void acquirePermit(long deadline) {
+        if (rateLimit == null)
+            return;
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = rateLimit.tryAcquire(deadline - start, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        rateLimitWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rateLimited.increment();
+            // Until the bucket has refilled a permit, in whole seconds
+            long retryAfter = (rateLimit.nanosUntilAvailable() + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+            throw new GeminiUnavailableException("Gemini request rate limit reached, try again later",
+                    Math.max(1, retryAfter), null);
+        }
+    }
+
+    /** Exponential backoff with equal jitter: half the step is fixed, half random. */
+    private long backoffNanos(int attempt) {
+        long step = Math.min(maxBackoff.toNanos(), retryBackoff.toNanos() << Math.min(attempt, 20));
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+
+    /** Delay asked for by a Retry-After header in seconds, or -1 when there is none. */
+    private static long retryAfterNanos(HttpHeaders headers) {
+        String value = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null)
+            return -1;
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, Object> requestBody(String prompt) {
+        Map<String, Object> part = new HashMap<>();
+        part.put("text", prompt);
+        List<Map<String, Object>> parts = new ArrayList<>();
+        parts.add(part);
+        Map<String, Object> content = new HashMap<>();
+        content.put("parts", parts);
+        List<Map<String, Object>> contents = new ArrayList<>();
+        contents.add(content);
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("contents", contents);
+        return requestBody;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String extractText(Map<String, Object> responseBody) {
+        if (responseBody != null && responseBody.containsKey("candidates")) {
+            List<Map<String, Object>> candidates = (List<Map<String, Object>>) responseBody.get("candidates");
+            if (!candidates.isEmpty()) {
+                Map<String, Object> candidate = candidates.get(0);
+                Map<String, Object> contentResponse = (Map<String, Object>) candidate.get("content");
+                List<Map<String, Object>> partsResponse = (List<Map<String, Object>>) contentResponse.get("parts");
+                if (!partsResponse.isEmpty()) {
+                    return (String) partsResponse.get(0).get("text");
+                }
+            }
+        }
+
+        throw new RuntimeException("Invalid response from Gemini API");
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        deadlines.shutdownNow();
+        httpClient.close();
+    }
+}
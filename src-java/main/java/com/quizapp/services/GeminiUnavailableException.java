@@ -0,0 +1,31 @@
+package com.quizapp.services;
+
+/**
+ * Thrown without calling Gemini when its circuit breaker is open, all
+ * upstream call slots are taken or the request rate limit is reached. Callers should answer 503 and suggest
+ * retrying after {@link #getRetryAfterSeconds()}.
+ */
+public class GeminiUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public GeminiUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /** The exception itself or the first cause of this type, or null. */
+    public static GeminiUnavailableException find(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof GeminiUnavailableException)
+                return (GeminiUnavailableException) cause;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.quizapp.services;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs password hashing and verification on a small, bounded pool of its own.
+ * BCrypt is deliberately slow, so a burst of logins would otherwise occupy the
+ * request threads that also serve questions and submissions. When the queue is
+ * full, work is rejected immediately with {@link RejectedExecutionException}.
+ */
+@Component
+public class PasswordHasher {
+
+	private final PasswordEncoder encoder;
+	private final ThreadPoolExecutor executor;
+	private final Timer encodeTime;
+	private final Timer matchesTime;
+	private final Timer queueWait;
+	private final Counter rejected;
+
+	public PasswordHasher(PasswordEncoder encoder, MeterRegistry meterRegistry,
+			@Value("${security.password.pool-size:0}") int poolSize,
+			@Value("${security.password.queue-capacity:64}") int queueCapacity) {
+		this.encoder = encoder;
+		int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+		AtomicInteger count = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), r -> {
+					Thread t = new Thread(r, "password-hash-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.AbortPolicy());
+		this.encodeTime = meterRegistry.timer("auth.password.hash", "op", "encode");
+		this.matchesTime = meterRegistry.timer("auth.password.hash", "op", "matches");
+		this.queueWait = meterRegistry.timer("auth.password.queue.wait");
+		this.rejected = meterRegistry.counter("auth.password.rejected");
+		meterRegistry.gauge("auth.password.queue", executor.getQueue(), q -> q.size());
+	}
+
+	public CompletableFuture<String> encode(CharSequence rawPassword) {
+		return submit(() -> encoder.encode(rawPassword), encodeTime);
+	}
+
+	public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+		return submit(() -> encoder.matches(rawPassword, encodedPassword), matchesTime);
+	}
+
+	/** True if the hash was made with weaker settings (e.g. a lower work factor) than the current ones. */
+	public boolean needsRehash(String encodedPassword) {
+		return encoder.upgradeEncoding(encodedPassword);
+	}
+
+	private <T> CompletableFuture<T> submit(Supplier<T> work, Timer timer) {
+		long queuedAt = System.nanoTime();
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+				return timer.record(work);
+			}, executor);
+		} catch (RejectedExecutionException e) {
+			rejected.increment();
+			throw e;
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,145 @@
+package com.quizapp.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.quizapp.repository.QuestionRepository;
+import com.quizapp.utils.ETags;
+import com.quizapp.utils.SingleFlight;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache of the public question payload of a quiz, kept as ready-made JSON bytes
+ * and as their gzip encoding. Every student taking a quiz gets the same bytes,
+ * so they are built once instead of re-serialized on every request. Concurrent
+ * misses for the same quiz share one query.
+ */
+@Component
+public class QuestionPayloadCache {
+
+	/** Payload of a quiz without questions. Never cached, so a later creation is always seen. */
+	static final Payload EMPTY = new Payload("[]".getBytes(StandardCharsets.UTF_8));
+
+	public static final class Payload {
+		private final byte[] json;
+		private final byte[] gzip;
+		private final String etag;
+		private final String gzipEtag;
+
+		Payload(byte[] json) {
+			this.json = json;
+			this.gzip = gzip(json);
+			this.etag = ETags.of(json);
+			this.gzipEtag = ETags.variant(etag, "gzip");
+		}
+
+		public byte[] getJson() {
+			return json;
+		}
+
+		public byte[] getGzip() {
+			return gzip;
+		}
+
+		/** Strong ETag of the JSON; the gzip encoding has its own. */
+		public String getEtag(boolean gzip) {
+			return gzip ? gzipEtag : etag;
+		}
+
+		/** True if the client already holds either encoding of this payload. */
+		public boolean isNotModified(String ifNoneMatch) {
+			return ETags.matches(ifNoneMatch, etag, gzipEtag);
+		}
+
+		public boolean isEmpty() {
+			return this == EMPTY;
+		}
+
+		private static byte[] gzip(byte[] bytes) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 32);
+			try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+				gz.write(bytes);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private final QuestionRepository repo;
+	private final ObjectMapper objectMapper;
+	private final Cache<String, Payload> cache;
+	private final SingleFlight<String, Optional<Payload>> loads;
+
+	public QuestionPayloadCache(QuestionRepository repo, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+			@Value("${quiz.questions.cache.max-size:2000}") long maxSize,
+			@Value("${quiz.questions.cache.expire-after-access:30m}") Duration expireAfterAccess) {
+		this.repo = repo;
+		this.objectMapper = objectMapper;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterAccess(expireAfterAccess)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "questionPayloads");
+		this.loads = new SingleFlight<>(meterRegistry.counter("quiz.reads.coalesced", "read", "questions"));
+	}
+
+	/** Returns the payload of a quiz, or empty if the lookup found nothing at all. */
+	public Optional<Payload> get(String quizId) {
+		Payload cached = cache.getIfPresent(quizId);
+		if (cached != null)
+			return Optional.of(cached);
+		// A shared quiz code makes every student start at once; they share one query
+		return loads.load(quizId, () -> load(quizId));
+	}
+
+	private Optional<Payload> load(String quizId) {
+		Optional<List<Map<String, String>>> res = repo.findByQuizId(quizId);
+		if (!res.isPresent())
+			return Optional.empty();
+		List<Map<String, String>> questions = res.get();
+		if (questions == null || questions.isEmpty())
+			return Optional.of(EMPTY);
+		try {
+			Payload payload = new Payload(objectMapper.writeValueAsBytes(questions));
+			cache.put(quizId, payload);
+			return Optional.of(payload);
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** True if an Accept-Encoding header allows gzip (and does not disable it with q=0). */
+	public static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return false;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.trim().split(";");
+			if (!"gzip".equalsIgnoreCase(parts[0].trim()))
+				continue;
+			for (int i = 1; i < parts.length; i++) {
+				if (parts[i].replace(" ", "").matches("q=0(\\.0*)?"))
+					return false;
+			}
+			return true;
+		}
+		return false;
+	}
+}
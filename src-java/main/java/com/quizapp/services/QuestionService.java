@@ -1,10 +1,14 @@
 package com.quizapp.services;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,32 +20,73 @@ import com.quizapp.repository.QuestionRepository;
 public class QuestionService {
 
 	private QuestionRepository repo;
+	private AnswerKeyCache answerKeyCache;
+	private QuestionPayloadCache payloadCache;
+	private CacheControl cacheControl;
 
-	public QuestionService(QuestionRepository repo) {
+	public QuestionService(QuestionRepository repo, AnswerKeyCache answerKeyCache, QuestionPayloadCache payloadCache,
+			@Value("${quiz.http.cache.max-age:1h}") Duration maxAge,
+			@Value("${quiz.http.cache.shared:false}") boolean shared) {
 		this.repo = repo;
+		this.answerKeyCache = answerKeyCache;
+		this.payloadCache = payloadCache;
+		CacheControl cc = CacheControl.maxAge(maxAge);
+		this.cacheControl = shared ? cc.cachePublic() : cc.cachePrivate();
 	}
 
+	/** Cache-Control for quiz content, which never changes once created. */
+	public CacheControl getCacheControl() {
+		return cacheControl;
+	}
+
+	/**
+	 * Persists the questions of a new quiz. They are plain INSERTs, batched by
+	 * Hibernate when the surrounding transaction flushes.
+	 */
 	@Transactional
-	public boolean addQuestions(List<Question> questions, String quizId) {
-		try {
-			for (Question q : questions) {
-				q.setQuizId(quizId);
-				repo.save(q);
-			}
-			return true;
-		} catch (Exception e) {
-			return false;
-		}
+	public void addQuestions(List<Question> questions, String quizId) {
+		for (Question q : questions)
+			q.setQuizId(quizId);
+		repo.saveAll(questions);
+		answerKeyCache.populate(quizId, questions);
 	}
 
-	public ResponseEntity<?> getQuiz(String id) {
-		Optional<List<Map<String, String>>> res = repo.findByQuizId(id);
+	/**
+	 * Writes the cached JSON of a quiz's questions as is, gzip-encoded when the
+	 * client accepts it. A matching If-None-Match is answered with 304 from the
+	 * cache, without a database read.
+	 */
+	public ResponseEntity<?> getQuiz(String id, boolean gzip, String ifNoneMatch) {
+		Optional<QuestionPayloadCache.Payload> res = payloadCache.get(id);
 		if (!res.isPresent())
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		List<Map<String, String>> questions = res.get();
-		if (questions == null || questions.isEmpty())
-			return ResponseEntity.ok().body(java.util.Collections.emptyList());
-		return ResponseEntity.ok().body(questions);
+		QuestionPayloadCache.Payload payload = res.get();
+		boolean notModified = payload.isNotModified(ifNoneMatch);
+		ResponseEntity.BodyBuilder builder = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+				.eTag(payload.getEtag(gzip))
+				.cacheControl(payload.isEmpty() ? CacheControl.noCache() : cacheControl)
+				.varyBy(HttpHeaders.ACCEPT_ENCODING);
+		if (notModified)
+			return builder.build();
+		return body(builder, payload, gzip);
+	}
+
+	/**
+	 * The cached JSON of a quiz's questions for a POST, which caches must not
+	 * store, so without ETag or Cache-Control.
+	 */
+	public ResponseEntity<?> getQuestions(String id, boolean gzip) {
+		Optional<QuestionPayloadCache.Payload> res = payloadCache.get(id);
+		if (!res.isPresent())
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		return body(ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT_ENCODING), res.get(), gzip);
+	}
 
+	private static ResponseEntity<?> body(ResponseEntity.BodyBuilder builder, QuestionPayloadCache.Payload payload,
+			boolean gzip) {
+		builder.contentType(MediaType.APPLICATION_JSON);
+		if (gzip)
+			return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.getGzip());
+		return builder.body(payload.getJson());
 	}
 }
@@ -0,0 +1,85 @@
+package com.quizapp.services;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.DatabaseMetaData;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.quizapp.utils.KeyedPermutation;
+
+/**
+ * Hands out unique quiz codes without looking them up. Each instance reserves a
+ * block of ordinals from the quiz_code_seq sequence, and every ordinal is mapped
+ * to a code by a keyed permutation, so codes are not guessable from one another
+ * and never repeat across instances.
+ * <p>
+ * Ordinals fill the 6-digit codes first (100000-999999). Once those 900,000 are
+ * used up, the next ordinals become 7-digit codes, then 8, and so on, each
+ * length with its own permutation. Nothing has to change when that happens.
+ * <p>
+ * The key must stay the same across instances and restarts; a new key starts a
+ * different permutation, which would collide with codes already issued. It is
+ * set through QUIZ_CODE_KEY, and startup fails when it is missing or shorter
+ * than {@value #MIN_KEY_LENGTH} characters.
+ */
+@Component
+public class QuizCodeAllocator {
+
+	/** Must equal the increment of quiz_code_seq (V5 migration). */
+	static final int BLOCK_SIZE = 50;
+	private static final int MIN_DIGITS = 6;
+	static final int MIN_KEY_LENGTH = 16;
+
+	private static final String POSTGRES_NEXT_BLOCK_SQL = "select nextval('quiz_code_seq')";
+	private static final String H2_NEXT_BLOCK_SQL = "select next value for quiz_code_seq";
+
+	private final JdbcTemplate jdbcTemplate;
+	private final String nextBlockSql;
+	private final byte[] key;
+	private final Map<Integer, KeyedPermutation> permutations = new HashMap<>();
+	private long next;
+	private long blockEnd;
+
+	public QuizCodeAllocator(JdbcTemplate jdbcTemplate, DataSource dataSource,
+			@Value("${quiz.codes.key:}") String key) throws MetaDataAccessException {
+		if (key == null || key.trim().length() < MIN_KEY_LENGTH)
+			throw new IllegalStateException("quiz.codes.key is missing or too short: set QUIZ_CODE_KEY to a secret of"
+					+ " at least " + MIN_KEY_LENGTH + " characters, and keep it once quiz codes have been issued");
+		this.jdbcTemplate = jdbcTemplate;
+		String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+		this.nextBlockSql = "H2".equals(product) ? H2_NEXT_BLOCK_SQL : POSTGRES_NEXT_BLOCK_SQL;
+		this.key = key.getBytes(StandardCharsets.UTF_8);
+	}
+
+	public synchronized String next() {
+		if (next == blockEnd) {
+			next = jdbcTemplate.queryForObject(nextBlockSql, Long.class);
+			blockEnd = next + BLOCK_SIZE;
+		}
+		return code(next++);
+	}
+
+	/** The code of the given ordinal: the first 900,000 have 6 digits, the next 9,000,000 have 7, ... */
+	String code(long ordinal) {
+		int digits = MIN_DIGITS;
+		long lowest = 100000;
+		long size = 900000;
+		while (ordinal >= size) {
+			ordinal -= size;
+			digits++;
+			lowest *= 10;
+			size *= 10;
+		}
+		long domain = size;
+		KeyedPermutation permutation = permutations.computeIfAbsent(digits, d -> new KeyedPermutation(key, domain));
+		return String.valueOf(lowest + permutation.apply(ordinal));
+	}
+}
@@ -0,0 +1,228 @@
+package com.quizapp.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.quizapp.dto.QuizCreationDto;
+import com.quizapp.models.Question;
+import com.quizapp.models.Quiz;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bulk import of quizzes from NDJSON: one {@link QuizCreationDto} per line. The
+ * body is read line by line and written in chunks of one transaction each, so
+ * memory use does not depend on the size of the upload. Invalid lines are
+ * skipped and reported by line number.
+ */
+@Service
+public class QuizImportService {
+
+	private static final Logger log = LoggerFactory.getLogger(QuizImportService.class);
+
+	private final QuizService quizService;
+	private final TransactionTemplate transactionTemplate;
+	private final ObjectReader reader;
+	private final int chunkSize;
+	private final int maxLineLength;
+	private final int maxReportedErrors;
+	private final Counter imported;
+	private final Counter failed;
+	private final Timer duration;
+
+	public QuizImportService(QuizService quizService, TransactionTemplate transactionTemplate,
+			ObjectMapper objectMapper, MeterRegistry meterRegistry,
+			@Value("${quiz.import.chunk-size:100}") int chunkSize,
+			@Value("${quiz.import.max-line-length:1048576}") int maxLineLength,
+			@Value("${quiz.import.max-reported-errors:100}") int maxReportedErrors) {
+		this.quizService = quizService;
+		this.transactionTemplate = transactionTemplate;
+		this.reader = objectMapper.readerFor(QuizCreationDto.class);
+		this.chunkSize = chunkSize;
+		this.maxLineLength = maxLineLength;
+		this.maxReportedErrors = maxReportedErrors;
+		this.imported = meterRegistry.counter("quiz.import.quizzes", "outcome", "imported");
+		this.failed = meterRegistry.counter("quiz.import.quizzes", "outcome", "failed");
+		this.duration = meterRegistry.timer("quiz.import");
+	}
+
+	private static final class Row {
+		final int line;
+		final Quiz quiz;
+		final List<Question> questions;
+
+		Row(int line, Quiz quiz, List<Question> questions) {
+			this.line = line;
+			this.quiz = quiz;
+			this.questions = questions;
+		}
+	}
+
+	private final class Report {
+		final long start = System.nanoTime();
+		int imported;
+		int failed;
+		final List<Map<String, Object>> errors = new ArrayList<>();
+
+		void succeeded(int count) {
+			imported += count;
+			QuizImportService.this.imported.increment(count);
+		}
+
+		void fail(int line, String error) {
+			failed++;
+			QuizImportService.this.failed.increment();
+			if (errors.size() < maxReportedErrors) {
+				Map<String, Object> e = new LinkedHashMap<>();
+				e.put("line", line);
+				e.put("error", error);
+				errors.add(e);
+			}
+		}
+
+		Map<String, Object> toBody() {
+			long nanos = System.nanoTime() - start;
+			duration.record(nanos, TimeUnit.NANOSECONDS);
+			Map<String, Object> body = new LinkedHashMap<>();
+			body.put("imported", imported);
+			body.put("failed", failed);
+			body.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(nanos));
+			body.put("quizzesPerSecond", nanos == 0 ? 0 : Math.round(imported * 1e9 / nanos));
+			body.put("errors", errors);
+			body.put("errorsTruncated", failed > errors.size());
+			return body;
+		}
+	}
+
+	public ResponseEntity<?> importQuizzes(String userId, InputStream body) throws IOException {
+		Report report = new Report();
+		List<Row> chunk = new ArrayList<>(chunkSize);
+		BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+		StringBuilder line = new StringBuilder();
+		int lineNo = 0;
+		int length;
+		while ((length = readLine(in, line)) >= 0) {
+			lineNo++;
+			if (length > maxLineLength) {
+				report.fail(lineNo, "Line longer than " + maxLineLength + " characters");
+				continue;
+			}
+			if (line.toString().trim().isEmpty())
+				continue;
+			QuizCreationDto dto;
+			try {
+				dto = reader.readValue(line.toString());
+			} catch (JsonProcessingException e) {
+				report.fail(lineNo, "Malformed JSON: " + e.getOriginalMessage());
+				continue;
+			}
+			String error = validate(dto);
+			if (error != null) {
+				report.fail(lineNo, error);
+				continue;
+			}
+			dto.getQuiz().setUserId(userId);
+			chunk.add(new Row(lineNo, dto.getQuiz(), dto.getQuestions()));
+			if (chunk.size() == chunkSize) {
+				write(chunk, report);
+				chunk.clear();
+			}
+		}
+		write(chunk, report);
+		Map<String, Object> result = report.toBody();
+		log.info("Imported {} quizzes for {} ({} failed) in {} ms", report.imported, userId, report.failed,
+				result.get("elapsedMs"));
+		return ResponseEntity.status(HttpStatus.OK).body(result);
+	}
+
+	/**
+	 * Reads the next line into the buffer, keeping at most maxLineLength
+	 * characters. Returns the full length of the line, or -1 at the end of input.
+	 */
+	private int readLine(BufferedReader in, StringBuilder buffer) throws IOException {
+		buffer.setLength(0);
+		int length = 0;
+		int c;
+		while ((c = in.read()) != -1 && c != '\n') {
+			if (length++ < maxLineLength && c != '\r')
+				buffer.append((char) c);
+		}
+		return c == -1 && length == 0 ? -1 : length;
+	}
+
+	private String validate(QuizCreationDto dto) {
+		if (dto == null || dto.getQuiz() == null)
+			return "Missing quiz";
+		if (!StringUtils.hasText(dto.getQuiz().getTitle()))
+			return "Missing title";
+		List<Question> questions = dto.getQuestions();
+		if (questions == null || questions.isEmpty())
+			return "No questions";
+		Set<String> numbers = new HashSet<>();
+		for (Question q : questions) {
+			if (q == null || !StringUtils.hasText(q.getQuestionNo()))
+				return "Question without questionNo";
+			if (!numbers.add(q.getQuestionNo()))
+				return "Duplicate questionNo " + q.getQuestionNo();
+			if (!CompiledAnswerKey.isValidCorrect(q.getCorrect()))
+				return "Question " + q.getQuestionNo() + " must have a correct option from 1 to 4";
+			if (q.getPoints() < 0)
+				return "Question " + q.getQuestionNo() + " has negative points";
+		}
+		return null;
+	}
+
+	/**
+	 * Stores a chunk in one transaction. If that fails, the rows are stored one
+	 * by one so only the offending ones are reported.
+	 */
+	private void write(List<Row> chunk, Report report) {
+		if (chunk.isEmpty())
+			return;
+		try {
+			transactionTemplate.executeWithoutResult(status -> {
+				for (Row row : chunk)
+					quizService.insertQuiz(row.quiz, row.questions);
+			});
+			report.succeeded(chunk.size());
+			return;
+		} catch (RuntimeException e) {
+			log.debug("Import chunk failed, retrying its rows one by one", e);
+		}
+		for (Row row : chunk) {
+			try {
+				ResponseEntity<?> res = quizService.createQuiz(row.quiz, row.questions);
+				if (res.getStatusCode() == HttpStatus.CREATED)
+					report.succeeded(1);
+				else
+					report.fail(row.line, String.valueOf(res.getBody()));
+			} catch (RuntimeException e) {
+				report.fail(row.line, "Could not be stored");
+			}
+		}
+	}
+}
@@ -1,98 +1,139 @@
 package com.quizapp.services;
 
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ThreadLocalRandom;
 
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.quizapp.models.AttemptedQuiz;
 import com.quizapp.models.Question;
 import com.quizapp.models.Quiz;
 import com.quizapp.repository.AttemptedQuizRepository;
-import com.quizapp.repository.QuestionRepository;
 import com.quizapp.repository.QuizRepository;
+import com.quizapp.utils.SingleFlight;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Service
 public class QuizService {
 
 	private QuizRepository quizRepo;
-	private QuestionRepository questionRepo;
 	private AttemptedQuizRepository attemptRepo;
+	private AnswerKeyCache answerKeyCache;
+	private AttemptWriteBehind writeBehind;
+	private QuizCodeAllocator codeAllocator;
+	private QuestionService questionService;
+	private TransactionTemplate transactionTemplate;
+	private SingleFlight<String, Optional<Map<String, String>>> instructionLoads;
+	private Counter codeCollisions;
+
+	private static final int MAX_CODE_ATTEMPTS = 5;
 
-	public QuizService(QuizRepository quizRepo, QuestionRepository questionRepo, AttemptedQuizRepository attemptRepo) {
+	public QuizService(QuizRepository quizRepo, AttemptedQuizRepository attemptRepo, AnswerKeyCache answerKeyCache,
+			AttemptWriteBehind writeBehind, QuizCodeAllocator codeAllocator, QuestionService questionService,
+			TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
 		this.quizRepo = quizRepo;
-		this.questionRepo = questionRepo;
+		this.codeAllocator = codeAllocator;
+		this.questionService = questionService;
+		this.transactionTemplate = transactionTemplate;
 		this.attemptRepo = attemptRepo;
+		this.answerKeyCache = answerKeyCache;
+		this.writeBehind = writeBehind;
+		this.instructionLoads = new SingleFlight<>(
+				meterRegistry.counter("quiz.reads.coalesced", "read", "instructions"));
+		this.codeCollisions = meterRegistry.counter("quiz.codes.collisions");
 	}
 
-	private boolean isUnique(String id) {
-		Optional<Quiz> o = quizRepo.findByQuizId(id);
-		if (!o.isPresent())
-			return true;
-		return false;
-	}
-
-	private String generateId() {
-		int code;
-		String id;
-		do {
-			code = ThreadLocalRandom.current().nextInt(100000, 1000000);
-			id = String.valueOf(code);
-		} while (!isUnique(id));
-		return id;
-	}
-
-	private Map<String, String> totalPointsAndQuestions(List<Question> questions) {
-		int totalPoints = 0;
-		int totalQuestions = 0;
+	/**
+	 * Creates a quiz and its questions in one transaction, so either both are
+	 * stored or neither is, and returns 201 with the quiz code. Returns 400 when
+	 * a question's correct answer is not an option number from 1 to 4.
+	 */
+	public ResponseEntity<?> createQuiz(Quiz quiz, List<Question> questions) {
 		for (Question q : questions) {
-			totalPoints += Integer.parseInt(q.getPoints());
-			totalQuestions++;
+			if (!CompiledAnswerKey.isValidCorrect(q.getCorrect()))
+				return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+						.body("Question " + q.getQuestionNo() + " must have a correct option from 1 to 4");
+		}
+		for (int attempt = 1;; attempt++) {
+			try {
+				String quizId = transactionTemplate.execute(status -> insertQuiz(quiz, questions));
+				return ResponseEntity.status(HttpStatus.CREATED).body(quizId);
+			} catch (DataIntegrityViolationException e) {
+				// Codes drawn at random before the allocator existed can still be taken
+				if (quizRepo.existsById(quiz.getQuizId())) {
+					if (attempt >= MAX_CODE_ATTEMPTS)
+						throw e;
+					codeCollisions.increment();
+					continue;
+				}
+				return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Duplicate or invalid questions");
+			}
 		}
-		Map<String, String> m = new HashMap<>();
-		m.put("totalPoints", Integer.toString(totalPoints));
-		m.put("totalQuestions", Integer.toString(totalQuestions));
-		return m;
 	}
 
-	public String createQuiz(Quiz quiz, List<Question> questions) {
-		String id = generateId();
-		quiz.setQuizId(id);
-		Map<String, String> totals = totalPointsAndQuestions(questions);
-		quiz.setTotalPoints(totals.get("totalPoints"));
-		quiz.setTotalQuestions(totals.get("totalQuestions"));
-		Quiz res = quizRepo.save(quiz);
-		return res.getQuizId();
+	/**
+	 * Stamps a new quiz with a code, the creation date and its totals, and stores
+	 * it with its questions in the current transaction. Returns the code.
+	 * <p>
+	 * The entities may come from an attempt that was rolled back, such as a code
+	 * collision or a failed import chunk. @PostPersist has already marked them
+	 * as not new, so they are marked new again; otherwise save() would merge
+	 * them, with a SELECT for every row.
+	 */
+	String insertQuiz(Quiz quiz, List<Question> questions) {
+		quiz.markNew();
+		for (Question q : questions)
+			q.markNew();
+		String quizId = codeAllocator.next();
+		quiz.setQuizId(quizId);
+		quiz.setDate(Instant.now());
+		int totalPoints = 0;
+		for (Question q : questions)
+			totalPoints += q.getPoints();
+		quiz.setTotalPoints(totalPoints);
+		quiz.setTotalQuestions(questions.size());
+		quizRepo.save(quiz);
+		questionService.addQuestions(questions, quizId);
+		return quizId;
 	}
 
 	public ResponseEntity<?> getQuizInstructions(String quizId) {
-		Optional<Map<String, String>> res = quizRepo.findQuizByQuizId(quizId);
+		Optional<Map<String, String>> res = instructionLoads.load(quizId, () -> quizRepo.findQuizByQuizId(quizId));
 		if (!res.isPresent() || res.get().get("quizId") == null)
 			return ResponseEntity.notFound().build();
 		return ResponseEntity.ok(res.get());
 	}
 
-	@Transactional
-	public ResponseEntity<?> submitQuiz(String quizId, String userId, String date, Map<String, String> answers) {
-		Integer points = 0;
-		for (String key : answers.keySet()) {
-			Map<String, String> original = questionRepo.findQuestionByQuizId(quizId, key);
-			if (answers.get(key) != null && answers.get(key).equals(original.get("correct"))) {
-				points += Integer.parseInt(original.get("points"));
-			}
-		}
-		String totalPoints = quizRepo.findPointsByQuizId(quizId);
+	public ResponseEntity<?> submitQuiz(String quizId, String userId, Map<String, String> answers) {
+		CompiledAnswerKey answerKey = answerKeyCache.get(quizId);
+		if (answerKey == null)
+			return ResponseEntity.notFound().build();
+		int points = answerKey.score(answers);
+		int totalPoints = answerKey.getTotalPoints();
 
-		AttemptedQuiz attempted = new AttemptedQuiz(userId, quizId, Integer.toString(points), date, totalPoints);
-		AttemptedQuiz res = attemptRepo.save(attempted);
+		AttemptedQuiz attempted = new AttemptedQuiz(userId, quizId, points, Instant.now(), totalPoints);
+		if (!writeBehind.isEnabled()) {
+			if (!attemptRepo.insertIfAbsent(attempted))
+				return ResponseEntity.status(HttpStatus.CONFLICT).build();
+		} else {
+			AttemptWriteBehind.Enqueued enqueued = writeBehind.enqueue(attempted);
+			if (enqueued == AttemptWriteBehind.Enqueued.DUPLICATE)
+				return ResponseEntity.status(HttpStatus.CONFLICT).build();
+			if (enqueued == AttemptWriteBehind.Enqueued.REJECTED)
+				return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		}
 		Map<String, String> performance = new HashMap<>();
 		performance.put("points", Integer.toString(points));
-		performance.put("totalPoints", totalPoints);
+		performance.put("totalPoints", Integer.toString(totalPoints));
 		return ResponseEntity.ok().body(performance);
 	}
 
@@ -0,0 +1,363 @@
+package com.quizapp.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.quizapp.models.Question;
+
+/**
+ * Single-pass parser of the model's quiz text. Text may arrive in chunks of any
+ * size; characters are consumed once, a line at a time, without regular
+ * expressions or splitting. A question is complete when its Points line follows
+ * the answer, when the next question starts, or when the text ends.
+ *
+ * Tolerates the usual drift in the format: CRLF line ends, markdown bold,
+ * headings and bullets, "Question 1:" or "Q1)" markers, "A." or "(A)" options,
+ * and "Answer:" instead of "Correct:". Blocks that cannot be used are skipped and
+ * reported by {@link #errors()}. Accepted questions are numbered 1..n. Not
+ * thread-safe.
+ */
+class QuizStreamParser {
+
+    /** Why a question block was skipped or partly ignored. */
+    enum Problem {
+        MISSING_QUESTION, MISSING_OPTIONS, MISSING_ANSWER, INVALID_ANSWER, INVALID_POINTS
+    }
+
+    static final class ParseError {
+        private final int block;
+        private final Problem problem;
+
+        ParseError(int block, Problem problem) {
+            this.block = block;
+            this.problem = problem;
+        }
+
+        /** 1-based position of the block in the model's output. */
+        int getBlock() {
+            return block;
+        }
+
+        Problem getProblem() {
+            return problem;
+        }
+
+        @Override
+        public String toString() {
+            return "question " + block + ": " + problem.name().toLowerCase(Locale.ROOT).replace('_', ' ');
+        }
+    }
+
+    private static final int OPTIONS = 4;
+
+    private final int maxQuestions;
+    private final StringBuilder line = new StringBuilder(128);
+    private final StringBuilder scratch = new StringBuilder(64);
+    private final List<ParseError> errors = new ArrayList<>();
+    private int accepted;
+
+    // The question being read
+    private boolean open;
+    private boolean closed;
+    private int block;
+    private final StringBuilder text = new StringBuilder(128);
+    private final String[] options = new String[OPTIONS];
+    private char correct;
+    private boolean answerSeen;
+    private int points;
+
+    QuizStreamParser(int maxQuestions) {
+        this.maxQuestions = maxQuestions;
+    }
+
+    /** Adds a chunk of text and returns the questions it completed, if any. */
+    List<Question> accept(CharSequence chunk) {
+        List<Question> completed = null;
+        int from = 0;
+        int n = chunk.length();
+        while (from < n && accepted < maxQuestions) {
+            int newline = from;
+            while (newline < n && chunk.charAt(newline) != '\n')
+                newline++;
+            line.append(chunk, from, newline);
+            if (newline == n)
+                break;
+            from = newline + 1;
+            Question question = endLine();
+            if (question != null) {
+                if (completed == null)
+                    completed = new ArrayList<>(1);
+                completed.add(question);
+            }
+        }
+        return completed == null ? Collections.emptyList() : completed;
+    }
+
+    /** Ends the text and returns the questions still open, if any. */
+    List<Question> finish() {
+        List<Question> completed = new ArrayList<>(1);
+        if (accepted < maxQuestions) {
+            Question question = endLine();
+            if (question != null)
+                completed.add(question);
+            question = close();
+            if (question != null)
+                completed.add(question);
+        }
+        line.setLength(0);
+        return completed;
+    }
+
+    /** Blocks skipped or partly ignored so far. */
+    List<ParseError> errors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /** Interprets the buffered line; returns a question if the line completed one. */
+    private Question endLine() {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r')
+            end--;
+        int start = skipDecoration(0, end);
+        end = trimEnd(start, end);
+        Question completed = null;
+        if (start < end) {
+            int rest = questionMarker(start, end);
+            if (rest >= 0) {
+                completed = close();
+                begin(rest, end);
+            } else if (open && !closed) {
+                completed = readField(start, end);
+            }
+        }
+        line.setLength(0);
+        return completed;
+    }
+
+    private void begin(int start, int end) {
+        open = true;
+        closed = false;
+        block++;
+        text.setLength(0);
+        for (int i = 0; i < OPTIONS; i++)
+            options[i] = null;
+        correct = 0;
+        answerSeen = false;
+        points = 1;
+        appendText(start, end);
+    }
+
+    private Question readField(int start, int end) {
+        int option = optionIndex(start, end);
+        if (option >= 0) {
+            int valueStart = skipSpaces(optionEnd(start), end);
+            if (valueStart < end) {
+                scratch.setLength(0);
+                copyText(valueStart, end, scratch);
+                options[option] = scratch.toString();
+            }
+            return null;
+        }
+        int value = label(start, end, "correct answer");
+        if (value < 0)
+            value = label(start, end, "correct");
+        if (value < 0)
+            value = label(start, end, "answer");
+        if (value >= 0) {
+            answerSeen = true;
+            correct = answerLetter(value, end);
+            return null;
+        }
+        value = label(start, end, "points");
+        if (value >= 0) {
+            points = parsePoints(value, end);
+            // Points is the last line of the requested format
+            return answerSeen ? close() : null;
+        }
+        // Continuation of the question text, until the options start
+        if (options[0] == null && options[1] == null)
+            appendText(start, end);
+        return null;
+    }
+
+    /** Finishes the open question: returns it if usable, otherwise records why not. */
+    private Question close() {
+        if (!open || closed)
+            return null;
+        closed = true;
+        Problem problem = null;
+        if (text.length() == 0)
+            problem = Problem.MISSING_QUESTION;
+        else if (options[0] == null || options[1] == null || options[2] == null || options[3] == null)
+            problem = Problem.MISSING_OPTIONS;
+        else if (!answerSeen)
+            problem = Problem.MISSING_ANSWER;
+        else if (correct == 0)
+            problem = Problem.INVALID_ANSWER;
+        if (problem != null) {
+            errors.add(new ParseError(block, problem));
+            return null;
+        }
+        Question question = new Question();
+        question.setQuestionNo(String.valueOf(++accepted));
+        question.setQuestion(text.toString());
+        question.setOption1(options[0]);
+        question.setOption2(options[1]);
+        question.setOption3(options[2]);
+        question.setOption4(options[3]);
+        question.setCorrect(String.valueOf(correct));
+        question.setPoints(points);
+        return question;
+    }
+
+    private void appendText(int start, int end) {
+        if (start >= end)
+            return;
+        if (text.length() > 0)
+            text.append(' ');
+        copyText(start, end, text);
+    }
+
+    /** Copies part of the line without markdown bold markers. */
+    private void copyText(int start, int end, StringBuilder to) {
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c == '*' && i + 1 < end && line.charAt(i + 1) == '*')
+                i++;
+            else
+                to.append(c);
+        }
+    }
+
+    /**
+     * Recognizes "Q1.", "Q1)", "Q1:" and "Question 1:" at start; returns where the
+     * question text begins, or -1.
+     */
+    private int questionMarker(int start, int end) {
+        int i = start;
+        if (regionMatches(i, end, "question"))
+            i = skipSpaces(i + "question".length(), end);
+        else if (line.charAt(i) == 'Q' || line.charAt(i) == 'q')
+            i++;
+        else
+            return -1;
+        int digits = i;
+        while (i < end && Character.isDigit(line.charAt(i)))
+            i++;
+        if (i == digits || i >= end || (line.charAt(i) != '.' && line.charAt(i) != ')' && line.charAt(i) != ':'))
+            return -1;
+        return skipDecoration(i + 1, end);
+    }
+
+    /** Option index 0-3 for lines starting "A)", "A.", "A:" or "(A)", or -1. */
+    private int optionIndex(int start, int end) {
+        int i = start;
+        boolean parenthesized = line.charAt(i) == '(';
+        if (parenthesized)
+            i++;
+        if (i + 1 >= end)
+            return -1;
+        int option = Character.toUpperCase(line.charAt(i)) - 'A';
+        if (option < 0 || option >= OPTIONS)
+            return -1;
+        char separator = line.charAt(i + 1);
+        if (parenthesized ? separator != ')' : separator != ')' && separator != '.' && separator != ':')
+            return -1;
+        // Text such as "A.M." is not an option: the separator must be followed by a space
+        if (i + 2 < end && !Character.isWhitespace(line.charAt(i + 2)) && line.charAt(i + 2) != '*')
+            return -1;
+        return option;
+    }
+
+    private int optionEnd(int start) {
+        int i = line.charAt(start) == '(' ? start + 3 : start + 2;
+        while (i < line.length() && line.charAt(i) == '*')
+            i++;
+        return i;
+    }
+
+    /** If the line starts with the label (any case) and a colon, returns where its value begins; else -1. */
+    private int label(int start, int end, String name) {
+        if (!regionMatches(start, end, name))
+            return -1;
+        int i = start + name.length();
+        while (i < end && line.charAt(i) == '*')
+            i++;
+        if (i >= end || line.charAt(i) != ':')
+            return -1;
+        return skipDecoration(i + 1, end);
+    }
+
+    private boolean regionMatches(int start, int end, String word) {
+        if (end - start < word.length())
+            return false;
+        for (int k = 0; k < word.length(); k++) {
+            if (Character.toLowerCase(line.charAt(start + k)) != word.charAt(k))
+                return false;
+        }
+        return true;
+    }
+
+    /** The answer letter A-D, from values like "B", "b)", "(B) 42" or "Option B"; 0 if none. */
+    private char answerLetter(int start, int end) {
+        int i = start;
+        if (regionMatches(i, end, "option"))
+            i = skipSpaces(i + "option".length(), end);
+        while (i < end && (line.charAt(i) == '(' || line.charAt(i) == '*'))
+            i++;
+        if (i >= end)
+            return 0;
+        char letter = Character.toUpperCase(line.charAt(i));
+        if (letter < 'A' || letter > 'D')
+            return 0;
+        if (i + 1 < end && Character.isLetterOrDigit(line.charAt(i + 1)))
+            return 0;
+        return letter;
+    }
+
+    private int parsePoints(int start, int end) {
+        int value = 0;
+        int i = start;
+        while (i < end && Character.isDigit(line.charAt(i)) && value < 1000)
+            value = value * 10 + (line.charAt(i++) - '0');
+        if (i == start || value == 0 || value >= 1000) {
+            errors.add(new ParseError(block, Problem.INVALID_POINTS));
+            return 1;
+        }
+        return value;
+    }
+
+    /** Skips whitespace, markdown emphasis, heading marks, quotes and list bullets. */
+    private int skipDecoration(int i, int end) {
+        while (i < end) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c) || c == '*' || c == '#' || c == '>' || c == '_')
+                i++;
+            else if (c == '-' && i + 1 < end && line.charAt(i + 1) == ' ')
+                i += 2;
+            else
+                break;
+        }
+        return i;
+    }
+
+    private int skipSpaces(int i, int end) {
+        while (i < end && Character.isWhitespace(line.charAt(i)))
+            i++;
+        return i;
+    }
+
+    /** Trims trailing whitespace and markdown emphasis. */
+    private int trimEnd(int start, int end) {
+        while (end > start) {
+            char c = line.charAt(end - 1);
+            if (Character.isWhitespace(c) || c == '*' || c == '_')
+                end--;
+            else
+                break;
+        }
+        return end;
+    }
+}
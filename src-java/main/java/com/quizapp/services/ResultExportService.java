@@ -0,0 +1,96 @@
+package com.quizapp.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.quizapp.dto.AttemptResultDto;
+import com.quizapp.repository.AttemptedQuizRepository;
+
+/**
+ * Streams the attempts of a quiz as CSV or NDJSON. Rows go from a database
+ * cursor straight to the response, so memory use does not grow with the number
+ * of attempts. The connection is only held while the body is being written.
+ */
+@Service
+public class ResultExportService {
+
+	public enum Format {
+		CSV, NDJSON
+	}
+
+	private static final String CSV_HEADER = "userId,firstName,lastName,points,totalPoints,date\n";
+
+	private final AttemptedQuizRepository attemptRepo;
+	private final TransactionTemplate readOnlyTransaction;
+	private final ObjectWriter jsonWriter;
+
+	public ResultExportService(AttemptedQuizRepository attemptRepo, TransactionTemplate transactionTemplate,
+			ObjectMapper objectMapper) {
+		this.attemptRepo = attemptRepo;
+		this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+		this.readOnlyTransaction.setReadOnly(true);
+		this.jsonWriter = objectMapper.writerFor(AttemptResultDto.class);
+	}
+
+	public StreamingResponseBody export(String quizId, Format format) {
+		return out -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+			readOnlyTransaction.executeWithoutResult(status -> {
+				try (Stream<AttemptResultDto> rows = attemptRepo.streamResultsByQuizId(quizId)) {
+					if (format == Format.CSV)
+						writer.write(CSV_HEADER);
+					Iterator<AttemptResultDto> it = rows.iterator();
+					while (it.hasNext())
+						writeRow(writer, it.next(), format);
+					writer.flush();
+				} catch (IOException e) {
+					// Typically the client went away; this ends the transaction and the cursor
+					throw new UncheckedIOException(e);
+				}
+			});
+		};
+	}
+
+	private void writeRow(Writer writer, AttemptResultDto row, Format format) throws IOException {
+		if (format == Format.NDJSON) {
+			writer.write(jsonWriter.writeValueAsString(row));
+			writer.write('\n');
+			return;
+		}
+		writer.write(csv(row.getUserId()));
+		writer.write(',');
+		writer.write(csv(row.getFirstName()));
+		writer.write(',');
+		writer.write(csv(row.getLastName()));
+		writer.write(',');
+		writer.write(Integer.toString(row.getPoints()));
+		writer.write(',');
+		writer.write(Integer.toString(row.getTotalPoints()));
+		writer.write(',');
+		writer.write(row.getDate() == null ? "" : row.getDate().toString());
+		writer.write('\n');
+	}
+
+	/** RFC 4180 field, with a leading quote on values a spreadsheet would run as a formula. */
+	private static String csv(String value) {
+		if (value == null)
+			return "";
+		if (!value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0)
+			value = "'" + value;
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+			return value;
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
@@ -1,5 +1,7 @@
 package com.quizapp.services;
 
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
@@ -7,20 +9,33 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quizapp.dto.AttemptedQuizDto;
 import com.quizapp.models.AttemptedQuiz;
 import com.quizapp.models.Quiz;
 import com.quizapp.models.User;
 import com.quizapp.repository.AttemptedQuizRepository;
 import com.quizapp.repository.QuizRepository;
 import com.quizapp.repository.UserRepository;
+import com.quizapp.utils.ETags;
 import com.quizapp.utils.JwtUtil;
+import com.quizapp.utils.PageCursor;
 
 @Service
 public class UserService {
@@ -29,66 +44,97 @@ public class UserService {
 	private QuizRepository quizRepo;
 	private QuestionService questionService;
 	private AttemptedQuizRepository attemptedRepo;
-	private final PasswordEncoder passwordEncoder;
+	private final PasswordHasher passwordHasher;
 	private final JwtUtil jwtUtil;
+	private final ObjectMapper objectMapper;
+	private final ResultExportService resultExportService;
+	private final boolean legacyUnpaged;
+	private final int defaultPageSize;
+	private final int maxPageSize;
 
 	public UserService(UserRepository repo, QuizRepository quizRepo, QuestionService questionService,
-			AttemptedQuizRepository attemptedRepo, PasswordEncoder passwordEncoder, JwtUtil jwtUtil) {
+			AttemptedQuizRepository attemptedRepo, PasswordHasher passwordHasher, JwtUtil jwtUtil,
+			ObjectMapper objectMapper, ResultExportService resultExportService,
+			@Value("${quiz.pagination.legacy-unpaged:true}") boolean legacyUnpaged,
+			@Value("${quiz.pagination.default-size:20}") int defaultPageSize,
+			@Value("${quiz.pagination.max-size:100}") int maxPageSize) {
 		this.repo = repo;
 		this.quizRepo = quizRepo;
 		this.questionService = questionService;
 		this.attemptedRepo = attemptedRepo;
-		this.passwordEncoder = passwordEncoder;
+		this.passwordHasher = passwordHasher;
 		this.jwtUtil = jwtUtil;
+		this.objectMapper = objectMapper;
+		this.resultExportService = resultExportService;
+		this.legacyUnpaged = legacyUnpaged;
+		this.defaultPageSize = defaultPageSize;
+		this.maxPageSize = maxPageSize;
 	}
 
-	public ResponseEntity<?> registerUser(User user) {
+	/**
+	 * Hashing runs on the password pool; the response completes when it is done,
+	 * or at once with 503 when that pool is saturated.
+	 */
+	public CompletableFuture<ResponseEntity<?>> registerUser(User user) {
 		// Basic input validation
 		if (user == null) {
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid payload");
+			return done(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid payload"));
 		}
 
 		String email = user.getEmail() == null ? "" : user.getEmail().trim().toLowerCase();
 		String password = user.getPassword() == null ? "" : user.getPassword();
 
 		if (!StringUtils.hasText(email) || !email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$")) {
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid email");
+			return done(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid email"));
 		}
 
 		if (!StringUtils.hasText(password) || password.length() < 8) {
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Password must be at least 8 characters");
+			return done(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Password must be at least 8 characters"));
 		}
 
 		if (repo.findByEmail(email).isPresent()) {
-			return ResponseEntity.status(HttpStatus.CONFLICT).body("Email already registered");
+			return done(ResponseEntity.status(HttpStatus.CONFLICT).body("Email already registered"));
 		}
 
-		String id = UUID.randomUUID().toString();
-		user.setId(id);
-		user.setEmail(email);
-		user.setPassword(passwordEncoder.encode(password));
-		repo.save(user);
-		return ResponseEntity.status(HttpStatus.CREATED).build();
+		try {
+			return passwordHasher.encode(password).thenApply(hash -> {
+				user.setId(UUID.randomUUID().toString());
+				user.setEmail(email);
+				user.setPassword(hash);
+				repo.save(user);
+				return ResponseEntity.status(HttpStatus.CREATED).build();
+			});
+		} catch (RejectedExecutionException e) {
+			return done(busy());
+		}
 	}
 
-	public ResponseEntity<?> loginUser(Map<String, String> login) {
+	public CompletableFuture<ResponseEntity<?>> loginUser(Map<String, String> login) {
 		String rawEmail = login.get("email");
 		String rawPassword = login.get("password");
 
 		if (!StringUtils.hasText(rawEmail) || !StringUtils.hasText(rawPassword)) {
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email and password are required");
+			return done(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email and password are required"));
 		}
 
 		String email = rawEmail.trim().toLowerCase();
 		Optional<User> res = repo.findByEmail(email);
 		if (!res.isPresent()) {
-			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+			return done(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
 		}
 		User user = res.get();
-		if (!passwordEncoder.matches(rawPassword, user.getPassword())) {
-			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid credentials");
+		try {
+			return passwordHasher.matches(rawPassword, user.getPassword())
+					.thenApply(matches -> matches ? loggedIn(user, rawPassword)
+							: ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid credentials"));
+		} catch (RejectedExecutionException e) {
+			return done(busy());
 		}
+	}
 
+	private ResponseEntity<?> loggedIn(User user, String rawPassword) {
+		if (passwordHasher.needsRehash(user.getPassword()))
+			rehash(user, rawPassword);
 		byte[] userId = String.valueOf(user.getId()).getBytes();
 		String encodedUid = Base64.getEncoder().encodeToString(userId);
 		Map<String, String> data = new HashMap<>();
@@ -99,6 +145,28 @@ public class UserService {
 		return ResponseEntity.status(HttpStatus.OK).body(data);
 	}
 
+	/**
+	 * Stores a hash with the current work factor in the background. Only replaces
+	 * the hash that was verified, so a concurrent password change wins.
+	 */
+	private void rehash(User user, String rawPassword) {
+		String current = user.getPassword();
+		try {
+			passwordHasher.encode(rawPassword).thenAccept(hash -> repo.updatePassword(user.getId(), current, hash));
+		} catch (RejectedExecutionException e) {
+			// Busy; the next login tries again
+		}
+	}
+
+	private static CompletableFuture<ResponseEntity<?>> done(ResponseEntity<?> response) {
+		return CompletableFuture.completedFuture(response);
+	}
+
+	private static ResponseEntity<?> busy() {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+				.body("Server busy, try again");
+	}
+
 	public User getUser(String id) {
 		User user = repo.findById(id).get();
 		return user;
@@ -111,57 +179,154 @@ public class UserService {
 		return true;
 	}
 
-	public ResponseEntity<List<Quiz>> allQuizzes(String userId) {
-		Optional<List<Quiz>> all = quizRepo.findByUserIdOrderByDateDesc(userId);
-		if (!all.isPresent())
-			return ResponseEntity.ok().body(java.util.Collections.emptyList());
-		return ResponseEntity.ok().body(all.get());
+	/**
+	 * Quizzes created by the user, newest first. Without limit and cursor, and while
+	 * the legacy flag is on, this is the whole list as a bare array; otherwise it is
+	 * one page plus the token of the next one.
+	 */
+	public ResponseEntity<?> allQuizzes(String userId, Integer limit, String cursor) {
+		if (legacyUnpaged && limit == null && cursor == null) {
+			Optional<List<Quiz>> all = quizRepo.findByUserIdOrderByDateDesc(userId);
+			if (!all.isPresent())
+				return ResponseEntity.ok().body(java.util.Collections.emptyList());
+			return ResponseEntity.ok().body(all.get());
+		}
+		PageCursor after;
+		try {
+			after = cursor == null ? null : PageCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid cursor");
+		}
+		if (limit != null && limit < 1)
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid limit");
+		int size = pageSize(limit);
+		Pageable page = PageRequest.of(0, size + 1);
+		List<Quiz> quizzes = after == null ? quizRepo.findFirstPageByUserId(userId, page)
+				: quizRepo.findPageByUserIdAfter(userId, after.getDate(), after.getQuizId(), page);
+		Map<String, Object> response = new HashMap<>();
+		response.put("next", trimToPage(quizzes, size, q -> PageCursor.after(q.getDate(), q.getQuizId())));
+		response.put("quizzes", quizzes);
+		return ResponseEntity.ok(response);
 	}
 
-	public ResponseEntity<Quiz> getQuiz(String quizId, String userId) {
-		Optional<Quiz> res = quizRepo.findByQuizId(quizId);
+	public ResponseEntity<Quiz> getQuiz(String quizId, String userId, String ifNoneMatch) {
+		Optional<Quiz> res = ownedQuiz(userId, quizId);
 		if (!res.isPresent())
 			return ResponseEntity.notFound().build();
-		if (userQuizRelation(userId, quizId)) {
-			res.get().setUserId(null);
-			return ResponseEntity.ok(res.get());
+		Quiz quiz = res.get();
+		quiz.setUserId(null);
+		String etag;
+		try {
+			etag = ETags.of(objectMapper.writeValueAsBytes(quiz));
+		} catch (JsonProcessingException e) {
+			throw new UncheckedIOException(e);
 		}
-		return ResponseEntity.notFound().build();
+		if (ETags.matches(ifNoneMatch, etag))
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+					.cacheControl(questionService.getCacheControl()).build();
+		return ResponseEntity.ok().eTag(etag).cacheControl(questionService.getCacheControl()).body(quiz);
 	}
 
-	private boolean userQuizRelation(String userId, String quizId) {
+	/** The quiz, if it exists and was created by the user. */
+	private Optional<Quiz> ownedQuiz(String userId, String quizId) {
 		Optional<Quiz> res = quizRepo.findByQuizId(quizId);
 		if (!res.isPresent() || res.get().getUserId() == null || res.get().getUserId().trim().isEmpty())
-			return false;
+			return Optional.empty();
 		if (userId.equals(res.get().getUserId()))
-			return true;
-		return false;
+			return res;
+		return Optional.empty();
+	}
+
+	/** Streams the attempts of a quiz the user created, as CSV or NDJSON. */
+	public ResponseEntity<StreamingResponseBody> exportResults(String quizId, String userId, String format) {
+		ResultExportService.Format f;
+		try {
+			f = ResultExportService.Format.valueOf(format.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+		}
+		if (!ownedQuiz(userId, quizId).isPresent())
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		String extension = f == ResultExportService.Format.CSV ? "csv" : "ndjson";
+		return ResponseEntity.ok()
+				.contentType(f == ResultExportService.Format.CSV ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+						: new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+				.header(HttpHeaders.CONTENT_DISPOSITION,
+						"attachment; filename=\"quiz-" + quizId + "-results." + extension + "\"")
+				.body(resultExportService.export(quizId, f));
 	}
 
-	public ResponseEntity<?> getQuestions(String quizId, String userId) {
-		if (!userQuizRelation(userId, quizId))
+	public ResponseEntity<?> getQuestions(String quizId, String userId, boolean gzip, String ifNoneMatch) {
+		if (!ownedQuiz(userId, quizId).isPresent())
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		return questionService.getQuiz(quizId);
+		return questionService.getQuiz(quizId, gzip, ifNoneMatch);
 	}
 
-	public ResponseEntity<?> getAttempted(String userId) {
-		List<AttemptedQuiz> attemptedQuizId = attemptedRepo.findByUserId(userId);
-		if (attemptedQuizId.isEmpty())
+	/**
+	 * Attempts of the user with the details of each quiz. Paged like
+	 * {@link #allQuizzes}; a page also carries the token of the next one.
+	 */
+	public ResponseEntity<?> getAttempted(String userId, Integer limit, String cursor) {
+		PageCursor after;
+		try {
+			after = cursor == null ? null : PageCursor.decode(cursor);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid cursor");
+		}
+		if (limit != null && limit < 1)
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid limit");
+		boolean paged = !legacyUnpaged || limit != null || cursor != null;
+		List<AttemptedQuizDto> attemptedQuizId;
+		String next = null;
+		if (!paged) {
+			attemptedQuizId = attemptedRepo.findDetailsByUserId(userId);
+		} else {
+			int size = pageSize(limit);
+			Pageable page = PageRequest.of(0, size + 1);
+			attemptedQuizId = after == null ? attemptedRepo.findFirstPageByUserId(userId, page)
+					: attemptedRepo.findPageByUserIdAfter(userId, after.getDate(), after.getQuizId(), page);
+			next = trimToPage(attemptedQuizId, size, a -> PageCursor.after(a.getDate(), a.getQuizId()));
+		}
+		if (attemptedQuizId.isEmpty() && after == null)
 			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-		Map<String, List<?>> response = new HashMap<>();
-		List<Map<String, String>> quizzes = new ArrayList<>();
-		for (AttemptedQuiz quiz : attemptedQuizId) {
-			Map<String, String> m = quizRepo.findByQuizIdNoDate(quiz.getQuizId());
-			if (!m.isEmpty())
-				quizzes.add(m);
+		Map<String, Object> response = new HashMap<>();
+		// The client pairs attempted[i] with quizDetails[i]
+		List<AttemptedQuiz> attempts = new ArrayList<>(attemptedQuizId.size());
+		List<Map<String, String>> quizzes = new ArrayList<>(attemptedQuizId.size());
+		for (AttemptedQuizDto a : attemptedQuizId) {
+			attempts.add(new AttemptedQuiz(a.getUserId(), a.getQuizId(), a.getPoints(), a.getDate(), a.getTotalPoints()));
+			Map<String, String> m = new HashMap<>();
+			m.put("quizId", a.getQuizId());
+			m.put("title", a.getTitle());
+			m.put("subject", a.getSubject());
+			m.put("difficulty", a.getDifficulty());
+			m.put("totalQuestions", String.valueOf(a.getTotalQuestions()));
+			quizzes.add(m);
 		}
 
-		response.put("attempted", attemptedQuizId);
+		response.put("attempted", attempts);
 		response.put("quizDetails", quizzes);
+		if (paged)
+			response.put("next", next);
 		return ResponseEntity.ok(response);
 
 	}
 
+	private int pageSize(Integer limit) {
+		return limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+	}
+
+	/**
+	 * Drops the look-ahead row fetched beyond the page size and returns the token
+	 * of the next page, or null if this is the last one.
+	 */
+	private static <T> String trimToPage(List<T> rows, int size, Function<T, PageCursor> position) {
+		if (rows.size() <= size)
+			return null;
+		rows.subList(size, rows.size()).clear();
+		return position.apply(rows.get(size - 1)).encode();
+	}
+
 	public ResponseEntity<?> getUsers(String userId) {
 		Optional<String> res = repo.findByUserId(userId);
 		if (!res.isPresent())
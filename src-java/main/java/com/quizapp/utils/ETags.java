@@ -0,0 +1,51 @@
+package com.quizapp.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Strong entity tags derived from response content, and If-None-Match matching.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    /** Quoted strong ETag of the given bytes: a truncated, URL-safe SHA-256. */
+    public static String of(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The ETag of another representation (e.g. an encoding) of the same content. */
+    public static String variant(String etag, String suffix) {
+        return etag.substring(0, etag.length() - 1) + "-" + suffix + "\"";
+    }
+
+    /**
+     * True if an If-None-Match header matches any of the current ETags, using the
+     * weak comparison RFC 7232 prescribes for this header.
+     */
+    public static boolean matches(String ifNoneMatch, String... etags) {
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty())
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if ("*".equals(candidate))
+                return true;
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            for (String etag : etags) {
+                if (etag.equals(candidate))
+                    return true;
+            }
+        }
+        return false;
+    }
+}
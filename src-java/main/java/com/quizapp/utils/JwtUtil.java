@@ -1,22 +1,82 @@
 package com.quizapp.utils;
 
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 
 @Component
 public class JwtUtil {
 
-    @Value("${security.jwt.secret:change-me-secret}")
-    private String jwtSecret;
+    /** Subject and expiry of a token whose signature has been checked. */
+    private static final class VerifiedToken {
+        final String subject;
+        final long expiresAtMillis;
+
+        VerifiedToken(String subject, long expiresAtMillis) {
+            this.subject = subject;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final long ttlMillis;
+    private final Cache<String, VerifiedToken> verified;
+
+    public JwtUtil(@Value("${security.jwt.secret:change-me-secret}") String jwtSecret,
+            @Value("${security.jwt.ttlMillis:86400000}") long ttlMillis,
+            @Value("${security.jwt.cache.max-size:10000}") long cacheMaxSize,
+            MeterRegistry meterRegistry) {
+        this.signingKey = new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8),
+                SignatureAlgorithm.HS256.getJcaName());
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.ttlMillis = ttlMillis;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        long remaining = token.expiresAtMillis - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remaining, 0));
+                    }
 
-    @Value("${security.jwt.ttlMillis:86400000}")
-    private long ttlMillis;
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "verifiedTokens");
+    }
 
     public String generateToken(String userId) {
         long now = System.currentTimeMillis();
@@ -26,7 +86,38 @@ public class JwtUtil {
                 .setSubject(userId)
                 .setIssuedAt(issuedAt)
                 .setExpiration(expiry)
-                .signWith(SignatureAlgorithm.HS256, jwtSecret.getBytes(StandardCharsets.UTF_8))
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
+
+    /**
+     * Returns the subject of a validly signed, unexpired token, or null. Tokens
+     * seen before are answered from a cache keyed by their SHA-256 digest, until
+     * their exp claim passes.
+     */
+    public String verify(String token) {
+        String digest = digest(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        if (cached != null && cached.expiresAtMillis > System.currentTimeMillis())
+            return cached.subject;
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+        // Tokens without exp stay valid but are not cached, so they are always re-checked
+        if (claims.getExpiration() != null && claims.getSubject() != null)
+            verified.put(digest, new VerifiedToken(claims.getSubject(), claims.getExpiration().getTime()));
+        return claims.getSubject();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package com.quizapp.utils;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Keyed bijection of [0, domain): a balanced Feistel network over the smallest
+ * even bit width that holds the domain, with HMAC-SHA256 as round function, and
+ * cycle walking to stay inside the domain. Consecutive inputs map to outputs
+ * that look unrelated without the key. Not thread-safe.
+ */
+public final class KeyedPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long domain;
+    private final int halfBits;
+    private final long halfMask;
+    private final Mac mac;
+
+    public KeyedPermutation(byte[] key, long domain) {
+        if (domain < 2)
+            throw new IllegalArgumentException("Domain too small: " + domain);
+        this.domain = domain;
+        int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        try {
+            this.mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long apply(long value) {
+        if (value < 0 || value >= domain)
+            throw new IllegalArgumentException("Out of domain: " + value);
+        // The Feistel block is at most 4x the domain, so this loops fewer than 4 times on average
+        do {
+            value = encrypt(value);
+        } while (value >= domain);
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ roundFunction(round, right);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long roundFunction(int round, long half) {
+        // The domain is mixed in so that permutations of different sizes are unrelated
+        byte[] input = ByteBuffer.allocate(20).putLong(domain).putInt(round).putLong(half).array();
+        return ByteBuffer.wrap(mac.doFinal(input)).getLong() & halfMask;
+    }
+}
@@ -0,0 +1,54 @@
+package com.quizapp.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a list ordered by (date desc, quizId desc): the next page starts
+ * strictly after the row with this date and quizId. Clients only see it as an
+ * opaque URL-safe token.
+ */
+public final class PageCursor {
+
+    private static final String VERSION = "1";
+
+    private final Instant date;
+    private final String quizId;
+
+    private PageCursor(Instant date, String quizId) {
+        this.date = date;
+        this.quizId = quizId;
+    }
+
+    public static PageCursor after(Instant date, String quizId) {
+        return new PageCursor(date, quizId);
+    }
+
+    public Instant getDate() {
+        return date;
+    }
+
+    public String getQuizId() {
+        return quizId;
+    }
+
+    public String encode() {
+        String raw = VERSION + "|" + date + "|" + quizId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Parses a token produced by {@link #encode()}; throws IllegalArgumentException if it is not one. */
+    public static PageCursor decode(String token) {
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[2].isEmpty())
+            throw new IllegalArgumentException("Malformed cursor");
+        try {
+            return new PageCursor(Instant.parse(parts[1]), parts[2]);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
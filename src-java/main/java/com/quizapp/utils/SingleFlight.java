@@ -0,0 +1,56 @@
+package com.quizapp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader
+ * and every caller that arrives while it is in flight waits for and shares its
+ * result (or exception). Nothing is kept once the load completes.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SingleFlight(Counter coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> leader = inFlight.putIfAbsent(key, own);
+        if (leader != null) {
+            coalesced.increment();
+            return await(leader);
+        }
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private V await(CompletableFuture<V> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.quizapp.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters sketch. At most {@code capacity} keys are tracked;
+ * an untracked key replaces the least counted one and inherits its count as
+ * error, so every key seen more than n/capacity times is guaranteed to be kept.
+ * Eviction scans all entries, which is cheap for the few hundred keys this is
+ * meant for. Thread-safe.
+ */
+public class SpaceSaving<K> {
+
+    private static final class Entry {
+        long count;
+        long error;
+
+        Entry(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<K, Entry> entries;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.entries = new HashMap<>(capacity * 2);
+    }
+
+    /** Counts one occurrence of key. Returns the key evicted to make room for it, or null. */
+    public synchronized K offer(K key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.count++;
+            return null;
+        }
+        if (entries.size() < capacity) {
+            entries.put(key, new Entry(1, 0));
+            return null;
+        }
+        K minKey = null;
+        Entry min = null;
+        for (Map.Entry<K, Entry> e : entries.entrySet()) {
+            if (min == null || e.getValue().count < min.count) {
+                minKey = e.getKey();
+                min = e.getValue();
+            }
+        }
+        entries.remove(minKey);
+        entries.put(key, new Entry(min.count + 1, min.count));
+        return minKey;
+    }
+
+    /**
+     * Up to limit keys whose guaranteed count (count minus error) is at least
+     * minCount, most frequent first.
+     */
+    public synchronized List<K> top(int limit, long minCount) {
+        List<Map.Entry<K, Entry>> candidates = new ArrayList<>();
+        for (Map.Entry<K, Entry> e : entries.entrySet()) {
+            if (e.getValue().count - e.getValue().error >= minCount)
+                candidates.add(e);
+        }
+        candidates.sort((a, b) -> Long.compare(b.getValue().count, a.getValue().count));
+        List<K> keys = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (int i = 0; i < candidates.size() && i < limit; i++)
+            keys.add(candidates.get(i).getKey());
+        return keys;
+    }
+
+    /** Halves every count, so the ranking follows recent demand. Keys that reach zero are dropped. */
+    public synchronized void decay() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            entry.count /= 2;
+            entry.error /= 2;
+            if (entry.count == 0)
+                it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,84 @@
+package com.quizapp.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter: up to {@code capacity} permits at once, refilled
+ * continuously at {@code permitsPerSecond}. Thread-safe; waiting callers are not
+ * served in any particular order.
+ */
+public class TokenBucket {
+
+    /** Where the bucket reads the time and waits, replaced by a fixed clock in tests. */
+    interface Ticker {
+        long nanoTime();
+
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    private static final Ticker SYSTEM = new Ticker() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long nanos) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    };
+
+    private final double capacity;
+    private final double permitsPerNano;
+    private final Ticker ticker;
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double capacity, double permitsPerSecond) {
+        this(capacity, permitsPerSecond, SYSTEM);
+    }
+
+    TokenBucket(double capacity, double permitsPerSecond, Ticker ticker) {
+        if (capacity < 1 || permitsPerSecond <= 0)
+            throw new IllegalArgumentException("capacity must be at least 1 and the rate positive");
+        this.capacity = capacity;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.ticker = ticker;
+        this.tokens = capacity;
+        this.refilledAt = ticker.nanoTime();
+    }
+
+    /** How long until a permit is available, 0 if one is now. */
+    public synchronized long nanosUntilAvailable() {
+        long now = ticker.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerNano);
+        refilledAt = now;
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+    }
+
+    /**
+     * Takes a permit, waiting up to the timeout for one. Returns false at once
+     * when the next permit would come too late. Under contention it can also
+     * return false after waiting, when others took the permit it waited for and
+     * the one after would come too late.
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = ticker.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                long now = ticker.nanoTime();
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * permitsPerNano);
+                refilledAt = now;
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / permitsPerNano);
+            }
+            if (ticker.nanoTime() + waitNanos > deadline)
+                return false;
+            ticker.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+-- Schema as Hibernate created it before migrations were introduced. Existing
+-- databases are baselined at version 0 and already have these tables.
+create table if not exists users (
+    id varchar(255) not null,
+    email varchar(255),
+    first_name varchar(255),
+    last_name varchar(255),
+    password varchar(255),
+    primary key (id)
+);
+
+create table if not exists quiz (
+    quiz_id varchar(255) not null,
+    date varchar(255),
+    difficulty varchar(255),
+    duration integer not null,
+    subject varchar(255),
+    title varchar(255),
+    total_points varchar(255),
+    total_questions varchar(255),
+    user_id varchar(255),
+    primary key (quiz_id)
+);
+
+create table if not exists question (
+    question_no varchar(255) not null,
+    quiz_id varchar(255) not null,
+    correct varchar(255),
+    option1 varchar(255),
+    option2 varchar(255),
+    option3 varchar(255),
+    option4 varchar(255),
+    points varchar(255),
+    question varchar(255),
+    primary key (question_no, quiz_id)
+);
+
+create table if not exists attempted_quiz (
+    quiz_id varchar(255) not null,
+    user_id varchar(255) not null,
+    date varchar(255),
+    points varchar(255),
+    total_points varchar(255),
+    primary key (quiz_id, user_id)
+);
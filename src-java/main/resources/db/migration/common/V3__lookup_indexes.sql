@@ -0,0 +1,9 @@
+-- Secondary indexes for the per-user and per-quiz lookups. The primary keys
+-- only cover question(question_no, quiz_id) and attempted_quiz(quiz_id, user_id),
+-- which do not help lookups by quiz_id or by user_id alone. Creations and
+-- attempt history are paged by (date desc, quiz_id desc) per user, so quiz_id
+-- is included to serve the tie-breaker as well.
+create index if not exists idx_quiz_user_date_id on quiz (user_id, date, quiz_id);
+create index if not exists idx_attempted_quiz_user_date_id on attempted_quiz (user_id, date, quiz_id);
+create index if not exists idx_question_quiz on question (quiz_id);
+create index if not exists idx_users_email on users (email);
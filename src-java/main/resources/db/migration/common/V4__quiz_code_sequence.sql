@@ -0,0 +1,3 @@
+-- Ordinals for quiz codes. Each app instance reserves a block of 50 per call,
+-- so the increment must match QuizCodeAllocator.BLOCK_SIZE.
+create sequence if not exists quiz_code_seq start with 0 minvalue 0 increment by 50;
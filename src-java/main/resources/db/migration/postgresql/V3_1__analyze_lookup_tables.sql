@@ -0,0 +1,5 @@
+-- Planner statistics for the converted columns and the new indexes
+analyze quiz;
+analyze attempted_quiz;
+analyze question;
+analyze users;
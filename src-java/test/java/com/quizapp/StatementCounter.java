@@ -0,0 +1,78 @@
+package com.quizapp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Counts the JDBC statements the application prepares, through Hibernate and
+ * JdbcTemplate alike, by wrapping the DataSource, and keeps their SQL. Import
+ * it into a test context and read {@link #get()} around the code under test.
+ */
+public class StatementCounter implements BeanPostProcessor {
+
+	private final AtomicLong count = new AtomicLong();
+	private final List<String> sql = new ArrayList<>();
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) {
+		if (!(bean instanceof DataSource))
+			return bean;
+		return new DelegatingDataSource((DataSource) bean) {
+			@Override
+			public Connection getConnection() throws SQLException {
+				return counting(super.getConnection());
+			}
+
+			@Override
+			public Connection getConnection(String username, String password) throws SQLException {
+				return counting(super.getConnection(username, password));
+			}
+		};
+	}
+
+	public long get() {
+		return count.get();
+	}
+
+	/** SQL of the statements prepared since the last reset, in order. */
+	public List<String> getSql() {
+		synchronized (sql) {
+			return new ArrayList<>(sql);
+		}
+	}
+
+	public void reset() {
+		count.set(0);
+		synchronized (sql) {
+			sql.clear();
+		}
+	}
+
+	private Connection counting(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					if (method.getName().startsWith("prepare") || method.getName().equals("createStatement"))
+						count.incrementAndGet();
+					if (method.getName().startsWith("prepare")) {
+						synchronized (sql) {
+							sql.add((String) args[0]);
+						}
+					}
+					try {
+						return method.invoke(connection, args);
+					} catch (InvocationTargetException e) {
+						throw e.getCause();
+					}
+				});
+	}
+}
@@ -0,0 +1,52 @@
+package com.quizapp.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Once the Gemini circuit breaker opens, generation is refused with 503 and
+ * Retry-After, without calling Gemini. The upstream here is a closed port, and
+ * one failed call opens the breaker.
+ */
+@SpringBootTest(properties = { "gemini.api.key=test", "gemini.api.base-url=http://127.0.0.1:1",
+		"gemini.http.max-retries=0", "gemini.circuit-breaker.window-size=1", "gemini.circuit-breaker.minimum-calls=1",
+		"gemini.circuit-breaker.open-duration=30s" })
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class AiQuizUnavailableTest {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Test
+	void openCircuitAnswers503WithRetryAfter() throws Exception {
+		assertThat(generate("fractions").getStatus()).isEqualTo(500);
+
+		MockHttpServletResponse refused = generate("decimals");
+
+		assertThat(refused.getStatus()).isEqualTo(503);
+		assertThat(refused.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("30");
+		assertThat(refused.getContentAsString()).isEqualTo("Gemini is failing or too slow, try again later");
+	}
+
+	private MockHttpServletResponse generate(String topic) throws Exception {
+		MvcResult result = mvc.perform(post("/quiz/generate-ai").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"grade\":\"5\",\"difficulty\":\"easy\",\"subject\":\"math\",\"topic\":\"" + topic + "\"}"))
+				.andReturn();
+		if (result.getRequest().isAsyncStarted())
+			result = mvc.perform(asyncDispatch(result)).andReturn();
+		return result.getResponse();
+	}
+}
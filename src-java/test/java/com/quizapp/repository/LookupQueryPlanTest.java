@@ -0,0 +1,147 @@
+package com.quizapp.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.quizapp.StatementCounter;
+
+/**
+ * H2 plans of the SQL Hibernate generates for the hot lookups: each must be
+ * served by an index, not a table scan.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(StatementCounter.class)
+class LookupQueryPlanTest {
+
+	@Autowired
+	private AttemptedQuizRepository attemptRepo;
+	@Autowired
+	private QuizRepository quizRepo;
+	@Autowired
+	private QuestionRepository questionRepo;
+	@Autowired
+	private UserRepository userRepo;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private StatementCounter statements;
+
+	@Test
+	void attemptLookupUsesPrimaryKey() {
+		String plan = plan(() -> attemptRepo.findByUserIdAndQuizId("user", "123456"));
+
+		assertThat(plan).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w+: USER_ID = \\?\\d+\\s+AND QUIZ_ID = \\?\\d+");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void attemptExistsUsesPrimaryKey() {
+		String plan = plan(() -> attemptRepo.existsByUserIdAndQuizId("user", "123456"));
+
+		assertThat(plan).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w+: USER_ID = \\?\\d+\\s+AND QUIZ_ID = \\?\\d+");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void quizLookupUsesPrimaryKey() {
+		String plan = plan(() -> quizRepo.findQuizByQuizId("123456"));
+
+		assertThat(plan).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w+: QUIZ_ID = \\?\\d+");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void quizEntityLookupUsesPrimaryKey() {
+		String plan = plan(() -> quizRepo.findByQuizId("123456"));
+
+		assertThat(plan).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w+: QUIZ_ID = \\?\\d+");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void userLookupsUseEmailIndexAndPrimaryKey() {
+		String byEmail = plan(() -> userRepo.findByEmail("user@example.com"));
+		String byId = plan(() -> userRepo.findByUserId("user"));
+
+		assertThat(byEmail).contains("PUBLIC.IDX_USERS_EMAIL: EMAIL = ?");
+		assertThat(byId).containsPattern("PUBLIC\\.PRIMARY_KEY_\\w+: ID = \\?\\d+");
+		assertThat(byEmail + byId).doesNotContain("tableScan");
+	}
+
+	@Test
+	void questionLookupUsesQuizIndex() {
+		String plan = plan(() -> questionRepo.findByQuizId("123456"));
+
+		assertThat(plan).contains("PUBLIC.IDX_QUESTION_QUIZ: QUIZ_ID = ?");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void answerKeyLookupUsesQuizIndex() {
+		String plan = plan(() -> questionRepo.findAnswerKeyByQuizId("123456"));
+
+		assertThat(plan).contains("PUBLIC.IDX_QUESTION_QUIZ: QUIZ_ID = ?");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void unpagedCreationsUseKeysetIndex() {
+		String plan = plan(() -> quizRepo.findByUserIdOrderByDateDesc("user"));
+
+		assertThat(plan).contains("PUBLIC.IDX_QUIZ_USER_DATE_ID: USER_ID = ?");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void unpagedHistoryUsesKeysetIndex() {
+		String plan = plan(() -> attemptRepo.findDetailsByUserId("user"));
+
+		assertThat(plan).contains("PUBLIC.IDX_ATTEMPTED_QUIZ_USER_DATE_ID: USER_ID = ?");
+		assertThat(plan).doesNotContain("tableScan");
+	}
+
+	@Test
+	void creationPagesUseKeysetIndex() {
+		String first = plan(() -> quizRepo.findFirstPageByUserId("user", PageRequest.of(0, 21)));
+		String next = plan(() -> quizRepo.findPageByUserIdAfter("user", Instant.now(), "123456", PageRequest.of(0, 21)));
+
+		assertThat(first).contains("PUBLIC.IDX_QUIZ_USER_DATE_ID: USER_ID = ?");
+		assertThat(next).contains("PUBLIC.IDX_QUIZ_USER_DATE_ID: USER_ID = ?");
+		assertThat(first + next).doesNotContain("tableScan");
+	}
+
+	@Test
+	void historyPagesUseKeysetIndex() {
+		String first = plan(() -> attemptRepo.findFirstPageByUserId("user", PageRequest.of(0, 21)));
+		String next = plan(
+				() -> attemptRepo.findPageByUserIdAfter("user", Instant.now(), "123456", PageRequest.of(0, 21)));
+
+		assertThat(first).contains("PUBLIC.IDX_ATTEMPTED_QUIZ_USER_DATE_ID: USER_ID = ?");
+		assertThat(next).contains("PUBLIC.IDX_ATTEMPTED_QUIZ_USER_DATE_ID: USER_ID = ?");
+		// The joined quiz is read by its primary key
+		assertThat(first + next).doesNotContain("tableScan");
+	}
+
+	/** Runs the query and returns the plan of the one statement it prepared. */
+	private String plan(Runnable query) {
+		statements.reset();
+		query.run();
+		List<String> sql = statements.getSql();
+		assertThat(sql).hasSize(1);
+		return jdbcTemplate.query(connection -> connection.prepareStatement("explain " + sql.get(0)), rs -> {
+			rs.next();
+			return rs.getString(1);
+		});
+	}
+}
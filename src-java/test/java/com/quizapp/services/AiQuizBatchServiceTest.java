@@ -0,0 +1,185 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.quizapp.dto.AiQuizBatchRequest;
+import com.quizapp.models.Question;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * AiQuizBatchService against a local Gemini API that answers each chunk's
+ * prompt with as many questions as it asked for.
+ */
+class AiQuizBatchServiceTest {
+
+    private static final Pattern CHUNK = Pattern
+            .compile("with (\\d+) multiple choice questions .* topic '([^']*)'\\.(?: This is set (\\d+) of)?");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiStub stub;
+    private AiQuizService aiQuizService;
+    private AiQuizBatchService batchService;
+
+    @BeforeEach
+    void start() throws IOException {
+        stub = new GeminiStub();
+        aiQuizService = new AiQuizService(stub.client(meterRegistry), 4, 8, Duration.ofSeconds(30), 100,
+                Duration.ofMinutes(30), meterRegistry);
+        batchService = new AiQuizBatchService(aiQuizService, meterRegistry, 10, 100, 4, 8, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void stop() {
+        batchService.shutdown();
+        aiQuizService.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void splitsTopicsIntoEvenChunksAndMergesThemInOrder() throws InterruptedException {
+        for (int i = 0; i < 5; i++)
+            stub.responses.add(GeminiStub.byPrompt(prompt -> {
+                Matcher chunk = CHUNK.matcher(prompt);
+                assertThat(chunk.find()).as(prompt).isTrue();
+                if (chunk.group(2).equals("Broken"))
+                    return GeminiStub.status(400);
+                int part = part(chunk);
+                // The second part repeats the first question of the first, differently written
+                String repeat = part == 2 ? "Q1. " + chunk.group(2).toUpperCase() + " part 1, question 1\n"
+                        + "A) a\nB) b\nC) c\nD) d\nCorrect: A\nPoints: 1\n\n" : "";
+                return GeminiStub.json(repeat + questions(chunk.group(2), part, Integer.parseInt(chunk.group(1))));
+            }));
+
+        Map<String, Object> job = done(submit("user", topic("Fractions", 25), topic("Decimals", 3),
+                topic("Broken", 2)));
+
+        assertThat(stub.prompts).hasSize(5);
+        List<String> chunks = new ArrayList<>();
+        for (String prompt : stub.prompts) {
+            Matcher chunk = CHUNK.matcher(prompt);
+            chunk.find();
+            chunks.add(chunk.group(2) + " " + part(chunk) + " x" + chunk.group(1));
+        }
+        assertThat(chunks).containsExactlyInAnyOrder("Fractions 1 x9", "Fractions 2 x8", "Fractions 3 x8",
+                "Decimals 1 x3", "Broken 1 x2");
+
+        assertThat(job.get("status")).isEqualTo("DONE");
+        @SuppressWarnings("unchecked")
+        List<Question> questions = (List<Question>) job.get("questions");
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            assertThat(questions.get(i).getQuestionNo()).isEqualTo(String.valueOf(i + 1));
+            texts.add(questions.get(i).getQuestion());
+        }
+        List<String> expected = new ArrayList<>();
+        expected.addAll(texts("Fractions", 1, 9));
+        // The repeat took the first of the part's 8 questions and was dropped
+        expected.addAll(texts("Fractions", 2, 7));
+        expected.addAll(texts("Fractions", 3, 8));
+        expected.addAll(texts("Decimals", 1, 3));
+        assertThat(texts).isEqualTo(expected);
+        assertThat(job.get("topics")).asList().extracting("topic", "requested", "generated").containsExactly(
+                tuple("Fractions", 25, 24), tuple("Decimals", 3, 3), tuple("Broken", 2, 0));
+        assertThat(job.get("errors")).asList().singleElement().asString().startsWith("Topic 'Broken' part 1 of 1: ");
+        assertThat(meterRegistry.counter("ai.batch.duplicates").count()).isEqualTo(1);
+    }
+
+    @Test
+    void spreadsCountEvenlyOverChunks() throws InterruptedException {
+        for (int i = 0; i < 3; i++)
+            stub.responses.add(GeminiStub.byPrompt(prompt -> {
+                Matcher chunk = CHUNK.matcher(prompt);
+                chunk.find();
+                return GeminiStub.json(questions(chunk.group(2), part(chunk), Integer.parseInt(chunk.group(1))));
+            }));
+
+        Map<String, Object> job = done(submit("user", topic("Fractions", 21)));
+
+        assertThat(stub.prompts).allSatisfy(prompt -> assertThat(prompt).contains("with 7 multiple choice questions"));
+        assertThat(job.get("questions")).asList().hasSize(21);
+    }
+
+    @Test
+    void failsJobWhenNoChunkSucceeds() throws InterruptedException {
+        stub.responses.add(GeminiStub.status(400));
+
+        Map<String, Object> job = done(submit("user", topic("Fractions", 5)));
+
+        assertThat(job.get("status")).isEqualTo("FAILED");
+        assertThat(job.get("questions")).asList().isEmpty();
+        assertThat(job.get("errors")).asList().hasSize(1);
+    }
+
+    @Test
+    void jobIsOnlyVisibleToItsOwner() throws InterruptedException {
+        stub.responses.add(GeminiStub.json(questions("Fractions", 1, 2)));
+        String jobId = submit("user", topic("Fractions", 2));
+
+        done(jobId);
+        assertThat(batchService.status("other", jobId).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private String submit(String userId, AiQuizBatchRequest.Topic... topics) {
+        AiQuizBatchRequest request = new AiQuizBatchRequest();
+        request.setGrade("Grade 5");
+        request.setDifficulty("Easy");
+        request.setSubject("Math");
+        request.setTopics(Arrays.asList(topics));
+        ResponseEntity<?> response = batchService.submit(userId, request);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        return (String) ((Map<?, ?>) response.getBody()).get("jobId");
+    }
+
+    /** Polls the job until it is no longer running and returns its status body. */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> done(String jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            Map<String, Object> body = (Map<String, Object>) batchService.status("user", jobId).getBody();
+            if (!"RUNNING".equals(body.get("status")))
+                return body;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job " + jobId + " still running");
+    }
+
+    private static int part(Matcher chunk) {
+        return chunk.group(3) == null ? 1 : Integer.parseInt(chunk.group(3));
+    }
+
+    private static AiQuizBatchRequest.Topic topic(String name, int count) {
+        return new AiQuizBatchRequest.Topic(name, count);
+    }
+
+    private static String questions(String topic, int part, int count) {
+        StringBuilder text = new StringBuilder();
+        List<String> texts = texts(topic, part, count);
+        for (int i = 0; i < texts.size(); i++)
+            text.append('Q').append(i + 1).append(". ").append(texts.get(i))
+                    .append("\nA) a\nB) b\nC) c\nD) d\nCorrect: A\nPoints: 1\n\n");
+        return text.toString();
+    }
+
+    private static List<String> texts(String topic, int part, int count) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++)
+            texts.add(topic + " part " + part + ", question " + i + "?");
+        return texts;
+    }
+}
@@ -0,0 +1,271 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.quizapp.dto.AiQuizRequest;
+import com.quizapp.models.Question;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * AiQuizService against a local Gemini API, for how identical requests share
+ * one upstream call, streamed or not.
+ */
+class AiQuizServiceTest {
+
+    private static final AiQuizRequest REQUEST = new AiQuizRequest("Grade 5", "Easy", "Math", "Fractions");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiStub stub;
+    private AiQuizService service;
+
+    @BeforeEach
+    void start() throws IOException {
+        stub = new GeminiStub();
+        service = new AiQuizService(stub.client(meterRegistry), 4, 8, Duration.ofSeconds(30), 100,
+                Duration.ofMinutes(30), meterRegistry);
+    }
+
+    @AfterEach
+    void stop() {
+        service.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void streamsQuestionsAsTheyArriveAndReplaysThemFromCache() throws Exception {
+        CountDownLatch release = streamInTwoParts();
+        Watcher first = new Watcher();
+
+        CompletableFuture<List<Question>> result = service.streamQuizAsync(REQUEST, first);
+        GeminiStub.await(first.received);
+        assertThat(first.questions).containsExactly("Question 1?");
+        assertThat(result).isNotDone();
+        release.countDown();
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).hasSize(3);
+        assertThat(first.questions).containsExactly("Question 1?", "Question 2?", "Question 3?");
+        Watcher replayed = new Watcher();
+        assertThat(service.streamQuizAsync(REQUEST, replayed).get(5, TimeUnit.SECONDS)).hasSize(3);
+        assertThat(replayed.questions).containsExactly("Question 1?", "Question 2?", "Question 3?");
+        assertThat(stub.prompts).hasSize(1);
+        assertThat(meterRegistry.counter("ai.generate.saved").count()).isEqualTo(1);
+    }
+
+    @Test
+    void joiningRunningStreamReplaysEmittedQuestionsThenFollows() throws Exception {
+        CountDownLatch release = streamInTwoParts();
+        Watcher first = new Watcher();
+        CompletableFuture<List<Question>> firstResult = service.streamQuizAsync(REQUEST, first);
+        GeminiStub.await(first.received);
+
+        Watcher joined = new Watcher();
+        CompletableFuture<List<Question>> joinedResult = service.streamQuizAsync(REQUEST, joined);
+        assertThat(joined.questions).containsExactly("Question 1?");
+        release.countDown();
+
+        assertThat(joinedResult.get(5, TimeUnit.SECONDS)).isEqualTo(firstResult.get(5, TimeUnit.SECONDS));
+        assertThat(joined.questions).containsExactly("Question 1?", "Question 2?", "Question 3?");
+        assertThat(first.questions).containsExactly("Question 1?", "Question 2?", "Question 3?");
+        assertThat(stub.prompts).hasSize(1);
+        assertThat(meterRegistry.counter("ai.generate.saved").count()).isEqualTo(1);
+    }
+
+    @Test
+    void plainRequestPinsRunningStreamPastItsLastWatcher() throws Exception {
+        CountDownLatch release = streamInTwoParts();
+        Watcher first = new Watcher();
+        CompletableFuture<List<Question>> streamed = service.streamQuizAsync(REQUEST, first);
+        GeminiStub.await(first.received);
+
+        CompletableFuture<List<Question>> plain = service.generateQuizAsync(REQUEST, false);
+        streamed.cancel(false);
+        release.countDown();
+
+        assertThat(plain.get(5, TimeUnit.SECONDS)).hasSize(3);
+        assertThat(first.questions).containsExactly("Question 1?");
+        assertThat(stub.prompts).hasSize(1);
+    }
+
+    @Test
+    void lastWatcherLeavingAbortsUpstream() throws Exception {
+        CountDownLatch aborted = new CountDownLatch(1);
+        stub.responses.add(exchange -> {
+            OutputStream out = GeminiStub.sse(exchange);
+            GeminiStub.send(out, GeminiStub.questions(1, 1));
+            if (GeminiStub.awaitAbort(out, 5000))
+                aborted.countDown();
+        });
+        Watcher first = new Watcher();
+        CompletableFuture<List<Question>> firstResult = service.streamQuizAsync(REQUEST, first);
+        GeminiStub.await(first.received);
+        CompletableFuture<List<Question>> joinedResult = service.streamQuizAsync(REQUEST, new Watcher());
+
+        firstResult.cancel(false);
+        assertThat(aborted.await(300, TimeUnit.MILLISECONDS)).isFalse();
+        joinedResult.cancel(false);
+        GeminiStub.await(aborted);
+
+        // Nothing of the abandoned stream is shared with the next request
+        stub.responses.add(exchange -> GeminiStub.send(GeminiStub.sse(exchange), GeminiStub.questions(1, 2)));
+        assertThat(service.streamQuizAsync(REQUEST, new Watcher()).get(5, TimeUnit.SECONDS)).hasSize(2);
+        assertThat(stub.prompts).hasSize(2);
+    }
+
+    @Test
+    void watcherThatFailsToReceiveIsDroppedAndAbortsUpstreamWhenLast() throws Exception {
+        CountDownLatch aborted = new CountDownLatch(1);
+        stub.responses.add(exchange -> {
+            OutputStream out = GeminiStub.sse(exchange);
+            GeminiStub.send(out, GeminiStub.questions(1, 1));
+            if (GeminiStub.awaitAbort(out, 5000))
+                aborted.countDown();
+        });
+
+        service.streamQuizAsync(REQUEST, question -> {
+            throw new IllegalStateException("connection closed");
+        });
+
+        GeminiStub.await(aborted);
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        stub.responses.add(exchange -> {
+            GeminiStub.await(release);
+            GeminiStub.json(GeminiStub.questions(1, 3)).send(exchange);
+        });
+        int callers = 8;
+        ExecutorService threads = Executors.newFixedThreadPool(callers);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<CompletableFuture<List<Question>>>> calls = new ArrayList<>();
+            for (int i = 0; i < callers; i++)
+                calls.add(threads.submit(() -> {
+                    GeminiStub.await(start);
+                    // Different spelling of the same request
+                    return service.generateQuizAsync(
+                            new AiQuizRequest(" grade 5", "EASY", "math ", "Fractions"), false);
+                }));
+            start.countDown();
+            List<CompletableFuture<List<Question>>> results = new ArrayList<>();
+            for (Future<CompletableFuture<List<Question>>> call : calls)
+                results.add(call.get(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            for (CompletableFuture<List<Question>> result : results)
+                assertThat(result.get(5, TimeUnit.SECONDS)).extracting(Question::getQuestion)
+                        .containsExactly("Question 1?", "Question 2?", "Question 3?");
+        } finally {
+            threads.shutdownNow();
+        }
+        assertThat(stub.prompts).hasSize(1);
+        assertThat(meterRegistry.counter("ai.generate.saved").count()).isEqualTo(callers - 1);
+    }
+
+    @Test
+    void callerGivingUpDoesNotCancelSharedCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        stub.responses.add(exchange -> {
+            GeminiStub.await(release);
+            GeminiStub.json(GeminiStub.questions(1, 2)).send(exchange);
+        });
+        CompletableFuture<List<Question>> first = service.generateQuizAsync(REQUEST, false);
+        CompletableFuture<List<Question>> second = service.generateQuizAsync(REQUEST, false);
+
+        first.cancel(false);
+        release.countDown();
+
+        assertThat(second.get(5, TimeUnit.SECONDS)).hasSize(2);
+        assertThat(stub.prompts).hasSize(1);
+    }
+
+    @Test
+    void freshRequestBypassesAndReplacesCachedQuiz() throws Exception {
+        stub.responses.add(GeminiStub.json(GeminiStub.questions(1, 3)));
+        stub.responses.add(GeminiStub.json(GeminiStub.questions(4, 5)));
+        assertThat(service.generateQuizAsync(REQUEST, false).get(5, TimeUnit.SECONDS)).hasSize(3);
+
+        assertThat(service.generateQuizAsync(REQUEST, true).get(5, TimeUnit.SECONDS))
+                .extracting(Question::getQuestion).containsExactly("Question 4?", "Question 5?");
+        awaitCacheSize(1);
+        assertThat(service.generateQuizAsync(REQUEST, false).get(5, TimeUnit.SECONDS))
+                .extracting(Question::getQuestion).containsExactly("Question 4?", "Question 5?");
+        assertThat(stub.prompts).hasSize(2);
+        assertThat(meterRegistry.counter("ai.generate.saved").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedAndEmptyResultsAreNotCached() throws Exception {
+        stub.responses.add(GeminiStub.status(500));
+        stub.responses.add(GeminiStub.json("Sorry, I cannot help with that."));
+        stub.responses.add(GeminiStub.json(GeminiStub.questions(1, 2)));
+
+        assertThatThrownBy(() -> service.generateQuizAsync(REQUEST, false).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+        awaitCacheSize(0);
+        assertThatThrownBy(() -> service.generateQuizAsync(REQUEST, false).get(5, TimeUnit.SECONDS))
+                .hasMessageContaining("No usable questions");
+        awaitCacheSize(0);
+
+        assertThat(service.generateQuizAsync(REQUEST, false).get(5, TimeUnit.SECONDS)).hasSize(2);
+        assertThat(stub.prompts).hasSize(3);
+        assertThat(meterRegistry.counter("ai.generate.saved").count()).isZero();
+    }
+
+    /** Waits for the cache to settle, as failed entries are dropped just after their callers see them fail. */
+    private void awaitCacheSize(long size) throws InterruptedException {
+        for (int i = 0; i < 500 && cacheSize() != size; i++)
+            Thread.sleep(10);
+        assertThat(cacheSize()).isEqualTo(size);
+    }
+
+    private long cacheSize() {
+        return (long) meterRegistry.get("cache.size").tag("cache", "aiQuizzes").gauge().value();
+    }
+
+    /** Streams question 1, then questions 2 and 3 once the returned latch is released. */
+    private CountDownLatch streamInTwoParts() {
+        CountDownLatch release = new CountDownLatch(1);
+        stub.responses.add(exchange -> {
+            OutputStream out = GeminiStub.sse(exchange);
+            GeminiStub.send(out, GeminiStub.questions(1, 1));
+            GeminiStub.await(release);
+            GeminiStub.send(out, GeminiStub.questions(2, 3));
+        });
+        return release;
+    }
+
+    /** Records the questions it is passed. */
+    private static final class Watcher implements Consumer<Question> {
+        final List<String> questions = new CopyOnWriteArrayList<>();
+        final CountDownLatch received = new CountDownLatch(1);
+
+        @Override
+        public void accept(Question question) {
+            questions.add(question.getQuestion());
+            received.countDown();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.quizapp.dto.AiQuizRequest;
+import com.quizapp.models.Question;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * AiQuizWarmPool over a stubbed AiQuizService whose every generation is a new
+ * one-question set, numbered in order. Refills are run by hand; the scheduled
+ * one is an hour out.
+ */
+class AiQuizWarmPoolTest {
+
+    private static final AiQuizRequest FRACTIONS = new AiQuizRequest("Grade 5", "Easy", "Math", "Fractions");
+    private static final AiQuizRequest DECIMALS = new AiQuizRequest("Grade 5", "Easy", "Math", "Decimals");
+    private static final AiQuizRequest GEOMETRY = new AiQuizRequest("Grade 5", "Easy", "Math", "Geometry");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AiQuizService aiQuizService = mock(AiQuizService.class);
+    private final AtomicInteger generations = new AtomicInteger();
+    private final List<AiQuizWarmPool> pools = new ArrayList<>();
+
+    // Pool settings, changed by tests before calling pool()
+    private boolean enabled = true;
+    private int budgetPerHour = 60;
+    private Duration maxAge = Duration.ofMinutes(30);
+
+    @BeforeEach
+    void stubGenerations() {
+        when(aiQuizService.isIdle()).thenReturn(true);
+        when(aiQuizService.generateUncached(any())).thenAnswer(invocation -> {
+            AiQuizRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(set(request.getTopic() + " " + generations.incrementAndGet()));
+        });
+    }
+
+    @AfterEach
+    void stopPools() {
+        pools.forEach(AiQuizWarmPool::shutdown);
+    }
+
+    @Test
+    void poolsSetsOnlyForHotTuplesAndServesEachOnce() {
+        AiQuizWarmPool pool = pool();
+        demand(pool, FRACTIONS, 3);
+        demand(pool, DECIMALS, 2);
+
+        pool.refill();
+        pool.refill();
+
+        verify(aiQuizService, times(2)).generateUncached(topic("Fractions"));
+        verify(aiQuizService, never()).generateUncached(topic("Decimals"));
+        // Spelled differently, but the same tuple
+        assertThat(question(pool.take(new AiQuizRequest("grade 5 ", "EASY", "math", " fractions"))))
+                .isEqualTo("Fractions 1");
+        assertThat(question(pool.take(FRACTIONS))).isEqualTo("Fractions 2");
+        assertThat(pool.take(FRACTIONS)).isEmpty();
+        assertThat(meterRegistry.counter("ai.warm-pool.requests", "outcome", "served").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("ai.warm-pool.requests", "outcome", "missed").count()).isEqualTo(6);
+    }
+
+    @Test
+    void eachRefillAddsOneSetPerTopicUpToSetsPerTopic() {
+        AiQuizWarmPool pool = pool();
+        // Hotter topics are refilled first
+        demand(pool, FRACTIONS, 4);
+        demand(pool, DECIMALS, 3);
+        pool.refill();
+        verify(aiQuizService, times(2)).generateUncached(any());
+        pool.refill();
+        pool.take(FRACTIONS);
+
+        pool.refill();
+        pool.refill();
+
+        verify(aiQuizService, times(5)).generateUncached(any());
+        assertThat(question(pool.take(FRACTIONS))).isEqualTo("Fractions 3");
+        assertThat(question(pool.take(FRACTIONS))).isEqualTo("Fractions 5");
+        assertThat(pool.take(FRACTIONS)).isEmpty();
+    }
+
+    @Test
+    void stopsAtHourlyBudget() {
+        budgetPerHour = 3;
+        AiQuizWarmPool pool = pool();
+        demand(pool, FRACTIONS, 3);
+        demand(pool, DECIMALS, 3);
+        demand(pool, GEOMETRY, 3);
+
+        pool.refill();
+        pool.refill();
+
+        verify(aiQuizService, times(3)).generateUncached(any());
+        assertThat(meterRegistry.counter("ai.warm-pool.generated").count()).isEqualTo(3);
+    }
+
+    @Test
+    void doesNotServeSetsPastMaxAge() throws InterruptedException {
+        maxAge = Duration.ofMillis(100);
+        AiQuizWarmPool pool = pool();
+        demand(pool, FRACTIONS, 3);
+        pool.refill();
+
+        Thread.sleep(150);
+
+        assertThat(pool.take(FRACTIONS)).isEmpty();
+        pool.refill();
+        assertThat(question(pool.take(FRACTIONS))).isEqualTo("Fractions 2");
+    }
+
+    @Test
+    void dropsRepeatedAndEmptySets() {
+        doReturn(CompletableFuture.completedFuture(set("Same")), CompletableFuture.completedFuture(set("Same")),
+                CompletableFuture.completedFuture(Collections.emptyList())).when(aiQuizService).generateUncached(any());
+        AiQuizWarmPool pool = pool();
+        demand(pool, FRACTIONS, 3);
+
+        for (int i = 0; i < 3; i++)
+            pool.refill();
+
+        assertThat(question(pool.take(FRACTIONS))).isEqualTo("Same");
+        assertThat(pool.take(FRACTIONS)).isEmpty();
+    }
+
+    @Test
+    void leavesUpstreamToUsersWhileTheyGenerate() {
+        when(aiQuizService.isIdle()).thenReturn(false);
+        AiQuizWarmPool pool = pool();
+        demand(pool, FRACTIONS, 3);
+
+        pool.refill();
+
+        verify(aiQuizService, never()).generateUncached(any());
+    }
+
+    @Test
+    void disabledPoolNeitherCountsNorServes() {
+        enabled = false;
+        AiQuizWarmPool pool = pool();
+        demand(pool, FRACTIONS, 3);
+
+        pool.refill();
+
+        verify(aiQuizService, never()).generateUncached(any());
+        assertThat(meterRegistry.counter("ai.warm-pool.requests", "outcome", "missed").count()).isZero();
+    }
+
+    /** Two sets per topic for tuples requested at least 3 times. */
+    private AiQuizWarmPool pool() {
+        AiQuizWarmPool pool = new AiQuizWarmPool(aiQuizService, meterRegistry, enabled, 20, 2, 3, 200, budgetPerHour,
+                Duration.ofHours(1), Duration.ofHours(1), maxAge);
+        pools.add(pool);
+        return pool;
+    }
+
+    /** Requests the tuple the given number of times while nothing is pooled. */
+    private static void demand(AiQuizWarmPool pool, AiQuizRequest request, int times) {
+        for (int i = 0; i < times; i++)
+            assertThat(pool.take(request)).isEmpty();
+    }
+
+    private static AiQuizRequest topic(String topic) {
+        return argThat(request -> request != null && topic.equals(request.getTopic()));
+    }
+
+    private static String question(Optional<List<Question>> set) {
+        assertThat(set).isPresent();
+        return set.get().get(0).getQuestion();
+    }
+
+    private static List<Question> set(String text) {
+        Question question = new Question();
+        question.setQuestionNo("1");
+        question.setQuestion(text);
+        return Collections.singletonList(question);
+    }
+}
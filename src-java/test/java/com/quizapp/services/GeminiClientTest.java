@@ -0,0 +1,493 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * GeminiClient against a local HTTP server that answers each request with the
+ * next scripted response.
+ */
+class GeminiClientTest {
+
+    private interface Response {
+        void send(HttpExchange exchange) throws IOException;
+    }
+
+    private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ExecutorService serverThreads;
+    private HttpServer server;
+
+    // Client settings, changed by tests before calling client()
+    private int maxRetries = 2;
+    private Duration readTimeout = Duration.ofSeconds(5);
+    private Duration totalTimeout = Duration.ofSeconds(10);
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private Duration slowCallDuration = Duration.ofSeconds(10);
+    private Duration openDuration = Duration.ofSeconds(30);
+    private int maxConcurrentCalls = 16;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange.getRequestURI().toString());
+            Response response = responses.poll();
+            try (InputStream body = exchange.getRequestBody()) {
+                // The server closes connections whose request was not read, which pooled clients would reuse
+                while (body.read(new byte[1024]) >= 0) {
+                }
+                if (response == null)
+                    exchange.sendResponseHeaders(599, -1);
+                else
+                    response.send(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void retriesServerErrorsAndReturnsText() {
+        responses.add(status(503));
+        responses.add(status(500));
+        responses.add(json(200, candidate("Q1. What?")));
+
+        assertThat(client().generateContent("prompt")).isEqualTo("Q1. What?");
+        assertThat(requests).hasSize(3).allMatch(uri -> uri.equals("/v1/models/test-model:generateContent"));
+        assertThat(meterRegistry.counter("gemini.retries", "reason", "503").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("gemini.retries", "reason", "500").count()).isEqualTo(1);
+    }
+
+    @Test
+    void retriesRateLimitAfterRetryAfter() {
+        responses.add(exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            exchange.sendResponseHeaders(429, -1);
+        });
+        responses.add(json(200, candidate("text")));
+
+        assertThat(client().generateContent("prompt")).isEqualTo("text");
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        responses.add(status(400));
+
+        assertThatThrownBy(() -> client().generateContent("prompt")).isInstanceOf(HttpClientErrorException.class);
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() {
+        for (int i = 0; i < 5; i++)
+            responses.add(status(502));
+
+        assertThatThrownBy(() -> client().generateContent("prompt")).isInstanceOf(HttpServerErrorException.class);
+        assertThat(requests).hasSize(maxRetries + 1);
+    }
+
+    @Test
+    void givesUpWhenBackoffExceedsTotalTimeout() {
+        totalTimeout = Duration.ofMillis(300);
+        responses.add(exchange -> {
+            exchange.getResponseHeaders().add("Retry-After", "5");
+            exchange.sendResponseHeaders(503, -1);
+        });
+
+        assertThatThrownBy(() -> client().generateContent("prompt")).isInstanceOf(HttpServerErrorException.class);
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void totalTimeoutBoundsTricklingResponse() {
+        totalTimeout = Duration.ofMillis(500);
+        CountDownLatch release = new CountDownLatch(1);
+        responses.add(exchange -> {
+            // Each byte comes well within the read timeout, the whole body never does
+            byte[] body = candidate("slow").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            for (byte b : body) {
+                out.write(b);
+                out.flush();
+                if (await(release, 100))
+                    return;
+            }
+        });
+        GeminiClient client = client();
+
+        long start = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOf(ResourceAccessException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void totalTimeoutCapsReadTimeoutOfAttempt() {
+        totalTimeout = Duration.ofMillis(400);
+        CountDownLatch release = new CountDownLatch(1);
+        responses.add(exchange -> await(release));
+        GeminiClient client = client();
+
+        long start = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOf(ResourceAccessException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    @Test
+    void totalTimeoutBoundsTricklingStream() {
+        totalTimeout = Duration.ofMillis(500);
+        CountDownLatch release = new CountDownLatch(1);
+        responses.add(exchange -> {
+            sse().send(exchange);
+            OutputStream out = exchange.getResponseBody();
+            for (int i = 0; i < 100; i++) {
+                out.write(event("more").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                if (await(release, 100))
+                    return;
+            }
+        });
+        List<String> texts = new CopyOnWriteArrayList<>();
+        GeminiClient client = client();
+
+        long start = System.nanoTime();
+        try {
+            assertThatThrownBy(() -> client.streamContent("prompt", texts::add, new GeminiClient.Cancellation()))
+                    .isInstanceOf(ResourceAccessException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertThat(texts).isNotEmpty().hasSizeLessThan(20);
+    }
+
+    @Test
+    void opensCircuitAfterUpstreamFailuresAndFailsFast() {
+        maxRetries = 0;
+        windowSize = 4;
+        minimumCalls = 4;
+        GeminiClient client = client();
+        for (int i = 0; i < 4; i++) {
+            responses.add(status(500));
+            assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOf(HttpServerErrorException.class);
+        }
+
+        assertThatThrownBy(client::checkAvailable).isInstanceOf(GeminiUnavailableException.class);
+        assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOfSatisfying(
+                GeminiUnavailableException.class, e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(30));
+        assertThat(requests).hasSize(4);
+        assertThat(meterRegistry.counter("gemini.circuit.transitions", "from", "CLOSED", "to", "OPEN").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenCircuit() {
+        maxRetries = 0;
+        windowSize = 4;
+        minimumCalls = 4;
+        GeminiClient client = client();
+        for (int i = 0; i < 4; i++) {
+            responses.add(status(400));
+            assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOf(HttpClientErrorException.class);
+        }
+        responses.add(json(200, candidate("text")));
+
+        client.checkAvailable();
+        assertThat(client.generateContent("prompt")).isEqualTo("text");
+        assertThat(requests).hasSize(5);
+    }
+
+    @Test
+    void halfOpenProbeClosesCircuit() throws InterruptedException {
+        maxRetries = 0;
+        windowSize = 2;
+        minimumCalls = 2;
+        openDuration = Duration.ofMillis(200);
+        GeminiClient client = client();
+        for (int i = 0; i < 2; i++) {
+            responses.add(status(503));
+            assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOf(HttpServerErrorException.class);
+        }
+        assertThatThrownBy(client::checkAvailable).isInstanceOf(GeminiUnavailableException.class);
+
+        Thread.sleep(400);
+        client.checkAvailable();
+        responses.add(json(200, candidate("probe")));
+        responses.add(json(200, candidate("closed")));
+
+        assertThat(client.generateContent("prompt")).isEqualTo("probe");
+        assertThat(client.generateContent("prompt")).isEqualTo("closed");
+        assertThat(meterRegistry.counter("gemini.circuit.transitions", "from", "HALF_OPEN", "to", "CLOSED").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void rejectsCallsBeyondBulkhead() throws Exception {
+        maxConcurrentCalls = 1;
+        GeminiClient client = client();
+        CountDownLatch received = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        responses.add(exchange -> {
+            received.countDown();
+            await(release);
+            json(200, candidate("first")).send(exchange);
+        });
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> client.generateContent("prompt"));
+        assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> client.generateContent("prompt")).isInstanceOfSatisfying(
+                GeminiUnavailableException.class, e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(1));
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(requests).hasSize(1);
+        assertThat(meterRegistry.counter("gemini.bulkhead.rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    void slowCallsOpenCircuit() {
+        windowSize = 2;
+        minimumCalls = 2;
+        slowCallDuration = Duration.ofMillis(200);
+        GeminiClient client = client();
+        for (int i = 0; i < 2; i++) {
+            responses.add(exchange -> {
+                await(new CountDownLatch(1), 300);
+                json(200, candidate("slow")).send(exchange);
+            });
+            assertThat(client.generateContent("prompt")).isEqualTo("slow");
+        }
+
+        assertThatThrownBy(client::checkAvailable).isInstanceOf(GeminiUnavailableException.class);
+    }
+
+    @Test
+    void longStreamsWithQuickFirstTextAreNotSlowCalls() {
+        windowSize = 2;
+        minimumCalls = 2;
+        slowCallDuration = Duration.ofMillis(200);
+        GeminiClient client = client();
+        for (int i = 0; i < 2; i++) {
+            responses.add(exchange -> {
+                sse(event("first")).send(exchange);
+                // Generation goes on past the slow-call duration before the stream ends
+                await(new CountDownLatch(1), 300);
+            });
+            List<String> texts = new ArrayList<>();
+            client.streamContent("prompt", texts::add, new GeminiClient.Cancellation());
+            assertThat(texts).containsExactly("first");
+        }
+
+        client.checkAvailable();
+        assertThat(meterRegistry.counter("gemini.circuit.transitions", "from", "CLOSED", "to", "OPEN").count())
+                .isZero();
+    }
+
+    @Test
+    void streamsTextOfEveryEventAcrossArbitraryWrites() {
+        String body = ": keep-alive\r\n"
+                + "data: " + candidate("Q1. What") + "\r\n\r\n"
+                + event(" is 2 + 2?\\nA) 4")
+                + "data: {\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"x\"},{\"text\":\"y\"}]}}]}\n\n"
+                + "data: {\"candidates\":[{\"content\":\n"
+                + "data: {\"parts\":[{\"text\":\"multi\"}]}}]}\n\n"
+                + event("")
+                + "data: " + candidate("end");
+        List<String> writes = new ArrayList<>();
+        for (int i = 0; i < body.length(); i += 7)
+            writes.add(body.substring(i, Math.min(i + 7, body.length())));
+        responses.add(sse(writes.toArray(new String[0])));
+        List<String> texts = new ArrayList<>();
+
+        client().streamContent("prompt", texts::add, new GeminiClient.Cancellation());
+
+        assertThat(texts).containsExactly("Q1. What", " is 2 + 2?\nA) 4", "x", "y", "multi", "end");
+        assertThat(requests).containsExactly("/v1/models/test-model:streamGenerateContent?alt=sse");
+    }
+
+    @Test
+    void retriesStreamBeforeFirstText() {
+        responses.add(status(503));
+        responses.add(sse(event("text")));
+        List<String> texts = new ArrayList<>();
+
+        client().streamContent("prompt", texts::add, new GeminiClient.Cancellation());
+
+        assertThat(texts).containsExactly("text");
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    void doesNotRetryStreamAfterFirstText() {
+        readTimeout = Duration.ofMillis(300);
+        CountDownLatch release = new CountDownLatch(1);
+        responses.add(exchange -> {
+            sse(event("once")).send(exchange);
+            await(release);
+        });
+        responses.add(sse(event("again")));
+        List<String> texts = new ArrayList<>();
+
+        try {
+            assertThatThrownBy(() -> client().streamContent("prompt", texts::add, new GeminiClient.Cancellation()))
+                    .isInstanceOf(ResourceAccessException.class);
+        } finally {
+            release.countDown();
+        }
+        assertThat(texts).containsExactly("once");
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void cancellingAbortsStreamWithoutOpeningCircuit() throws Exception {
+        windowSize = 1;
+        minimumCalls = 1;
+        GeminiClient client = client();
+        CountDownLatch release = new CountDownLatch(1);
+        responses.add(exchange -> {
+            sse(event("first")).send(exchange);
+            await(release);
+        });
+        GeminiClient.Cancellation cancellation = new GeminiClient.Cancellation();
+        CountDownLatch firstText = new CountDownLatch(1);
+        CompletableFuture<Void> stream = CompletableFuture
+                .runAsync(() -> client.streamContent("prompt", text -> firstText.countDown(), cancellation));
+        assertThat(firstText.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        cancellation.cancel();
+        try {
+            assertThatThrownBy(() -> stream.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                    .hasCauseInstanceOf(CancellationException.class);
+        } finally {
+            release.countDown();
+        }
+        // Well before the read timeout
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        client.checkAvailable();
+    }
+
+    @Test
+    void cancelledStreamDoesNotStart() {
+        GeminiClient.Cancellation cancellation = new GeminiClient.Cancellation();
+        cancellation.cancel();
+
+        assertThatThrownBy(() -> client().streamContent("prompt", text -> {
+        }, cancellation)).isInstanceOf(CancellationException.class);
+        assertThat(requests).isEmpty();
+    }
+
+    private GeminiClient client() {
+        return new GeminiClient(new RestTemplateBuilder(), meterRegistry, new ObjectMapper(), "key",
+                "http://127.0.0.1:" + server.getAddress().getPort(), "test-model", 4, Duration.ofSeconds(1),
+                Duration.ofSeconds(1), readTimeout, totalTimeout, maxRetries, Duration.ofMillis(10),
+                Duration.ofMillis(50), 0, 10, windowSize, minimumCalls, 50, slowCallDuration, 80,
+                openDuration, 1, maxConcurrentCalls, Duration.ofMillis(100));
+    }
+
+    private static Response status(int status) {
+        return exchange -> exchange.sendResponseHeaders(status, -1);
+    }
+
+    private static Response json(int status, String body) {
+        return exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        };
+    }
+
+    /** A chunked event stream sent in the given writes, each flushed. The exchange is left open. */
+    private static Response sse(String... writes) {
+        return exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            for (String write : writes) {
+                out.write(write.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        };
+    }
+
+    private static String event(String text) {
+        return "data: " + candidate(text) + "\n\n";
+    }
+
+    private static void await(CountDownLatch latch) {
+        await(latch, 10_000);
+    }
+
+    /** Whether the latch was released within the time. */
+    private static boolean await(CountDownLatch latch, long millis) {
+        try {
+            return latch.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    /** A response body with one candidate whose only part is the given text. */
+    private static String candidate(String text) {
+        return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"" + text + "\"}]}}]}";
+    }
+}
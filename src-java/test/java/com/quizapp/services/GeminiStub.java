@@ -0,0 +1,171 @@
+package com.quizapp.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Local Gemini API for the services built on GeminiClient. It answers each
+ * request with the next scripted response, and with 599 once none is left, and
+ * records the prompt of each.
+ */
+final class GeminiStub implements AutoCloseable {
+
+    interface Response {
+        void send(HttpExchange exchange) throws IOException;
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String PROMPT = "prompt";
+
+    final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    final List<String> prompts = new CopyOnWriteArrayList<>();
+    private final HttpServer server;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+
+    GeminiStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            Response response = responses.poll();
+            try (InputStream body = exchange.getRequestBody()) {
+                String prompt = JSON.readTree(readAll(body)).path("contents").path(0).path("parts").path(0)
+                        .path("text").asText();
+                prompts.add(prompt);
+                exchange.setAttribute(PROMPT, prompt);
+                if (response == null)
+                    exchange.sendResponseHeaders(599, -1);
+                else
+                    response.send(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.setExecutor(threads);
+        server.start();
+    }
+
+    /** A client with no retries, no rate limit and a breaker that does not open within a test. */
+    GeminiClient client(MeterRegistry meterRegistry) {
+        return new GeminiClient(new RestTemplateBuilder(), meterRegistry, new ObjectMapper(), "key",
+                "http://127.0.0.1:" + server.getAddress().getPort(), "test-model", 16, Duration.ofSeconds(1),
+                Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(10), 0, Duration.ofMillis(10),
+                Duration.ofMillis(50), 0, 10, 100, 100, 50, Duration.ofSeconds(10), 80, Duration.ofSeconds(30), 1,
+                64, Duration.ofMillis(100));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    /** A generateContent response whose text is the given quiz. */
+    static Response json(String text) {
+        return exchange -> {
+            byte[] bytes = candidate(text).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        };
+    }
+
+    /** Picks the response by the request's prompt, for calls that arrive in no fixed order. */
+    static Response byPrompt(Function<String, Response> route) {
+        return exchange -> route.apply((String) exchange.getAttribute(PROMPT)).send(exchange);
+    }
+
+    static Response status(int status) {
+        return exchange -> exchange.sendResponseHeaders(status, -1);
+    }
+
+    /** Starts a chunked event stream; the exchange is left open for {@link #send}. */
+    static OutputStream sse(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        return exchange.getResponseBody();
+    }
+
+    /** Writes one event carrying the given text and flushes it. */
+    static void send(OutputStream out, String text) throws IOException {
+        out.write(("data: " + candidate(text) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Writes a keep-alive comment every 20 ms until the client closes the
+     * connection, and says whether it did so within the time.
+     */
+    static boolean awaitAbort(OutputStream out, long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        try {
+            while (System.nanoTime() < deadline) {
+                out.write(": ping\n\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(20);
+            }
+            return false;
+        } catch (IOException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Quiz text for questions from..to, each answered A and worth one point. */
+    static String questions(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i <= to; i++)
+            text.append("Q").append(i).append(". Question ").append(i).append("?\n")
+                    .append("A) a\nB) b\nC) c\nD) d\nCorrect: A\nPoints: 1\n\n");
+        return text.toString();
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS))
+                throw new IllegalStateException("Timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String candidate(String text) {
+        try {
+            return "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":" + JSON.writeValueAsString(text) + "}]}}]}";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n; (n = in.read(buffer)) >= 0;)
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+}
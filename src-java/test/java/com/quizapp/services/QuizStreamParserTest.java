@@ -0,0 +1,227 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.quizapp.models.Question;
+
+/**
+ * Corpus of the format drift seen in model output, parsed in one chunk and in
+ * arbitrary chunks, and seeded random mutations of it.
+ */
+class QuizStreamParserTest {
+
+    /** Mixes the tolerated variants: CRLF, bold, headings, bullets, (A) options and "Answer: Option B". */
+    private static final String CORPUS = "Here is your quiz:\r\n"
+            + "\r\n"
+            + "**Question 1:** What is the capital of **France**?\r\n"
+            + "A) Berlin\r\n"
+            + "B) Paris\r\n"
+            + "C) Rome\r\n"
+            + "D) Madrid\r\n"
+            + "**Correct:** B\r\n"
+            + "**Points:** 2\r\n"
+            + "\r\n"
+            + "Q2) Which planet is the largest?\n"
+            + "(A) Mars\n"
+            + "(B) Jupiter\n"
+            + "(C) Venus\n"
+            + "(D) Earth\n"
+            + "Answer: Option B\n"
+            + "\n"
+            + "### Q3. What is 3 x 3?\n"
+            + "- A. 6\n"
+            + "- B. 9\n"
+            + "- C. 12\n"
+            + "- D. 33\n"
+            + "Correct Answer: (B) 9\n"
+            + "Points: 3\n"
+            + "\n"
+            + "Q4: Which gas do plants absorb?\n"
+            + "A: Oxygen\n"
+            + "B: Nitrogen\n"
+            + "C: Carbon dioxide\n"
+            + "D: Helium\n"
+            + "Correct: c\n"
+            + "Points: 1\n";
+
+    private static final String[] EXPECTED = {
+            "1|What is the capital of France?|Berlin|Paris|Rome|Madrid|B|2",
+            "2|Which planet is the largest?|Mars|Jupiter|Venus|Earth|B|1",
+            "3|What is 3 x 3?|6|9|12|33|B|3",
+            "4|Which gas do plants absorb?|Oxygen|Nitrogen|Carbon dioxide|Helium|C|1" };
+
+    @Test
+    void parsesCorpusInOneChunk() {
+        QuizStreamParser parser = new QuizStreamParser(10);
+
+        assertThat(describe(parse(parser, CORPUS))).containsExactly(EXPECTED);
+        assertThat(parser.errors()).isEmpty();
+    }
+
+    @Test
+    void emitsQuestionWhenItsPointsLineArrives() {
+        QuizStreamParser parser = new QuizStreamParser(10);
+
+        assertThat(parser.accept("Q1. What is 2 + 2?\nA) 3\nB) 4\nC) 5\nD) 6\nCorr")).isEmpty();
+        assertThat(parser.accept("ect: B\nPoi")).isEmpty();
+        assertThat(describe(parser.accept("nts: 2\n"))).containsExactly("1|What is 2 + 2?|3|4|5|6|B|2");
+        assertThat(parser.finish()).isEmpty();
+    }
+
+    @Test
+    void sameResultForAnyChunking() {
+        for (int size = 1; size <= 16; size++) {
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < CORPUS.length(); i += size)
+                chunks.add(CORPUS.substring(i, Math.min(i + size, CORPUS.length())));
+            assertThat(describe(parse(new QuizStreamParser(10), chunks.toArray(new String[0]))))
+                    .as("chunks of %d", size).containsExactly(EXPECTED);
+        }
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < CORPUS.length();) {
+                int next = Math.min(CORPUS.length(), i + 1 + random.nextInt(40));
+                chunks.add(CORPUS.substring(i, next));
+                i = next;
+            }
+            assertThat(describe(parse(new QuizStreamParser(10), chunks.toArray(new String[0]))))
+                    .as("split %s", chunks).containsExactly(EXPECTED);
+        }
+    }
+
+    @Test
+    void splitsInsideCrlfAndBoldMarkers() {
+        String[] chunks = { "**Question 1:** What is 1 + 1?\r", "\nA) 1\r\nB) 2\r\nC) 3\r\nD) 4\r\n*", "*Correct:*",
+                "* B\r\nPoints: 1\r", "\n" };
+
+        assertThat(describe(parse(new QuizStreamParser(10), chunks))).containsExactly("1|What is 1 + 1?|1|2|3|4|B|1");
+    }
+
+    @Test
+    void truncatedOutputKeepsCompleteQuestions() {
+        String truncated = CORPUS.substring(0, CORPUS.indexOf("- C. 12"));
+        QuizStreamParser parser = new QuizStreamParser(10);
+
+        assertThat(describe(parse(parser, truncated))).containsExactly(EXPECTED[0], EXPECTED[1]);
+        assertThat(parser.errors()).hasSize(1);
+        assertThat(parser.errors().get(0).getBlock()).isEqualTo(3);
+        assertThat(parser.errors().get(0).getProblem()).isEqualTo(QuizStreamParser.Problem.MISSING_OPTIONS);
+    }
+
+    @Test
+    void truncatedBeforePointsUsesDefaultPoints() {
+        String truncated = CORPUS.substring(0, CORPUS.indexOf("Points: 3"));
+
+        assertThat(describe(parse(new QuizStreamParser(10), truncated))).containsExactly(EXPECTED[0], EXPECTED[1],
+                "3|What is 3 x 3?|6|9|12|33|B|1");
+    }
+
+    @Test
+    void stopsAtMaxQuestions() {
+        QuizStreamParser parser = new QuizStreamParser(2);
+
+        assertThat(describe(parse(parser, CORPUS))).containsExactly(EXPECTED[0], EXPECTED[1]);
+        assertThat(parser.accept("Q5. More?\nA) a\nB) b\nC) c\nD) d\nCorrect: A\nPoints: 1\n")).isEmpty();
+        assertThat(parser.errors()).isEmpty();
+    }
+
+    @Test
+    void skipsUnusableBlocksAndRenumbers() {
+        String text = "Q1. No answer here\nA) a\nB) b\nC) c\nD) d\n\n"
+                + "Q2. Bad answer\nA) a\nB) b\nC) c\nD) d\nCorrect: E\nPoints: 1\n"
+                + "Q3. Good one\nA) a\nB) b\nC) c\nD) d\nCorrect: D\nPoints: x\n";
+        QuizStreamParser parser = new QuizStreamParser(10);
+
+        assertThat(describe(parse(parser, text))).containsExactly("1|Good one|a|b|c|d|D|1");
+        assertThat(parser.errors()).extracting(QuizStreamParser.ParseError::getProblem).containsExactly(
+                QuizStreamParser.Problem.MISSING_ANSWER, QuizStreamParser.Problem.INVALID_ANSWER,
+                QuizStreamParser.Problem.INVALID_POINTS);
+    }
+
+    /** Fragments the mutations splice in: markers, labels and line ends the parser reacts to. */
+    private static final String[] FRAGMENTS = { "\n", "\r\n", "\r", "**", "#", "- ", "Q1.", "Q9)", "Question 2:",
+            "A)", "(B)", "C.", "D:", "Correct:", "Correct Answer:", "Answer: Option", "Points:", "Points: 99999999999",
+            "E", " ", "\t", "\u00e9", "\ud83d\ude00", "\ud83d", "" };
+
+    @Test
+    void survivesMutatedInput() {
+        Random random = new Random(20240501);
+        for (int run = 0; run < 5000; run++) {
+            String input = mutate(CORPUS, random);
+            QuizStreamParser whole = new QuizStreamParser(3);
+            List<String> expected = describe(parse(whole, input));
+
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < input.length();) {
+                int next = Math.min(input.length(), i + 1 + random.nextInt(12));
+                chunks.add(input.substring(i, next));
+                i = next;
+            }
+            QuizStreamParser chunked = new QuizStreamParser(3);
+            List<Question> questions = parse(chunked, chunks.toArray(new String[0]));
+
+            assertThat(describe(questions)).as("run %d: %s", run, input).isEqualTo(expected);
+            assertThat(questions).hasSizeLessThanOrEqualTo(3);
+            for (int i = 0; i < questions.size(); i++) {
+                Question q = questions.get(i);
+                assertThat(q.getQuestionNo()).isEqualTo(String.valueOf(i + 1));
+                assertThat(q.getQuestion()).isNotEmpty();
+                assertThat(q.getCorrect()).isIn("A", "B", "C", "D");
+                assertThat(q.getPoints()).isPositive();
+            }
+            assertThat(chunked.errors()).hasSameSizeAs(whole.errors());
+        }
+    }
+
+    /** Applies a few random insertions, deletions, duplications and truncations. */
+    private static String mutate(String text, Random random) {
+        StringBuilder mutated = new StringBuilder(text);
+        for (int edits = 1 + random.nextInt(6); edits > 0; edits--) {
+            int at = random.nextInt(mutated.length() + 1);
+            switch (random.nextInt(5)) {
+            case 0:
+                mutated.insert(at, FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                break;
+            case 1:
+                mutated.delete(at, Math.min(mutated.length(), at + 1 + random.nextInt(20)));
+                break;
+            case 2:
+                int from = random.nextInt(mutated.length() + 1);
+                mutated.insert(at, mutated.substring(from, Math.min(mutated.length(), from + random.nextInt(60))));
+                break;
+            case 3:
+                mutated.setLength(at);
+                break;
+            default:
+                if (at < mutated.length())
+                    mutated.setCharAt(at, (char) random.nextInt(0x3000));
+            }
+            if (mutated.length() == 0)
+                break;
+        }
+        return mutated.toString();
+    }
+
+    private static List<Question> parse(QuizStreamParser parser, String... chunks) {
+        List<Question> questions = new ArrayList<>();
+        for (String chunk : chunks)
+            questions.addAll(parser.accept(chunk));
+        questions.addAll(parser.finish());
+        return questions;
+    }
+
+    private static List<String> describe(List<Question> questions) {
+        List<String> described = new ArrayList<>(questions.size());
+        for (Question q : questions)
+            described.add(String.join("|", q.getQuestionNo(), q.getQuestion(), q.getOption1(), q.getOption2(),
+                    q.getOption3(), q.getOption4(), q.getCorrect(), String.valueOf(q.getPoints())));
+        return described;
+    }
+}
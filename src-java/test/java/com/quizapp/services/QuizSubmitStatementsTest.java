@@ -0,0 +1,118 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.quizapp.StatementCounter;
+import com.quizapp.models.Question;
+import com.quizapp.models.Quiz;
+
+/**
+ * Query budget of grading a submission: the attempt INSERT, plus one read of
+ * the answer key only when it is not cached. The grade must be the same either way.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(StatementCounter.class)
+class QuizSubmitStatementsTest {
+
+	@Autowired
+	private QuizService quizService;
+	@Autowired
+	private AnswerKeyCache answerKeyCache;
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	@Autowired
+	private StatementCounter statements;
+
+	private Statistics statistics;
+	private String quizId;
+
+	@BeforeEach
+	void createQuiz() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		Quiz quiz = new Quiz();
+		quiz.setTitle("Arithmetic");
+		quiz.setSubject("Math");
+		quiz.setDifficulty("Easy");
+		quiz.setDuration(5);
+		quiz.setUserId("creator");
+		List<Question> questions = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			Question question = new Question();
+			question.setQuestionNo(String.valueOf(i));
+			question.setQuestion("What is " + i + " + 1?");
+			question.setOption1("0");
+			question.setOption2(String.valueOf(i + 1));
+			question.setOption3("10");
+			question.setOption4("11");
+			question.setCorrect("2");
+			question.setPoints(2);
+			questions.add(question);
+		}
+		ResponseEntity<?> created = quizService.createQuiz(quiz, questions);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		quizId = (String) created.getBody();
+	}
+
+	@Test
+	void submitWithCachedAnswerKeyOnlyInserts() {
+		reset();
+
+		ResponseEntity<?> result = quizService.submitQuiz(quizId, "student-hit", answers());
+
+		assertGraded(result);
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(statements.get()).isEqualTo(1);
+	}
+
+	@Test
+	void submitWithUncachedAnswerKeyReadsItOnce() {
+		answerKeyCache.invalidate(quizId);
+		reset();
+
+		ResponseEntity<?> result = quizService.submitQuiz(quizId, "student-miss", answers());
+
+		assertGraded(result);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statements.get()).isEqualTo(2);
+	}
+
+	private void reset() {
+		statistics.clear();
+		statements.reset();
+	}
+
+	/** Half of the ten questions answered right, at 2 points each. */
+	private static void assertGraded(ResponseEntity<?> result) {
+		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+		Map<String, String> graded = new HashMap<>();
+		graded.put("points", "10");
+		graded.put("totalPoints", "20");
+		assertThat(result.getBody()).isEqualTo(graded);
+	}
+
+	private static Map<String, String> answers() {
+		Map<String, String> answers = new HashMap<>();
+		for (int i = 1; i <= 10; i++)
+			answers.put(String.valueOf(i), i % 2 == 0 ? "2" : "1");
+		return answers;
+	}
+}
@@ -0,0 +1,84 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.quizapp.models.AttemptedQuiz;
+import com.quizapp.models.Question;
+import com.quizapp.models.Quiz;
+import com.quizapp.repository.AttemptedQuizRepository;
+
+/**
+ * With write-behind on, a resubmission is refused with 409 both while the first
+ * attempt is queued and after it is stored, and the stored score is the one
+ * the first response reported.
+ */
+@SpringBootTest(properties = "quiz.submit.write-behind.enabled=true")
+@ActiveProfiles("test")
+class QuizSubmitWriteBehindTest {
+
+	@Autowired
+	private QuizService quizService;
+	@Autowired
+	private AttemptedQuizRepository attemptRepo;
+
+	@Test
+	void duplicateSubmissionIsRefusedWhileQueuedAndOnceStored() throws InterruptedException {
+		String quizId = createQuiz();
+		Map<String, String> answers = Collections.singletonMap("1", "2");
+
+		ResponseEntity<?> first = quizService.submitQuiz(quizId, "student", answers);
+		ResponseEntity<?> queued = quizService.submitQuiz(quizId, "student", Collections.singletonMap("1", "1"));
+
+		assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(first.getBody()).isEqualTo(performance(3, 3));
+		assertThat(queued.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+
+		Optional<AttemptedQuiz> stored = Optional.empty();
+		for (int i = 0; i < 100 && !stored.isPresent(); i++) {
+			Thread.sleep(50);
+			stored = attemptRepo.findByUserIdAndQuizId("student", quizId);
+		}
+		assertThat(stored).hasValueSatisfying(a -> assertThat(a.getPoints()).isEqualTo(3));
+		assertThat(quizService.submitQuiz(quizId, "student", answers).getStatusCode())
+				.isEqualTo(HttpStatus.CONFLICT);
+		assertThat(quizService.submitQuiz(quizId, "other", answers).getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	private String createQuiz() {
+		Quiz quiz = new Quiz();
+		quiz.setTitle("Write-behind");
+		quiz.setSubject("Math");
+		quiz.setDifficulty("Easy");
+		quiz.setDuration(5);
+		quiz.setUserId("creator");
+		Question question = new Question();
+		question.setQuestionNo("1");
+		question.setQuestion("What is 1 + 1?");
+		question.setOption1("1");
+		question.setOption2("2");
+		question.setOption3("3");
+		question.setOption4("4");
+		question.setCorrect("2");
+		question.setPoints(3);
+		return (String) quizService.createQuiz(quiz, Collections.singletonList(question)).getBody();
+	}
+
+	private static Map<String, String> performance(int points, int totalPoints) {
+		Map<String, String> performance = new HashMap<>();
+		performance.put("points", Integer.toString(points));
+		performance.put("totalPoints", Integer.toString(totalPoints));
+		return performance;
+	}
+}
@@ -0,0 +1,113 @@
+package com.quizapp.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.quizapp.StatementCounter;
+import com.quizapp.models.Question;
+import com.quizapp.models.Quiz;
+
+/**
+ * Attempt history reads attempts joined with their quizzes in one query,
+ * however many quizzes the user attempted.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(StatementCounter.class)
+class UserAttemptedStatementsTest {
+
+	private static final int ATTEMPTS = 6;
+
+	@Autowired
+	private UserService userService;
+	@Autowired
+	private QuizService quizService;
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	@Autowired
+	private StatementCounter statements;
+
+	private Statistics statistics;
+	private String userId;
+
+	@BeforeEach
+	void attemptQuizzes() {
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		userId = "student-" + System.nanoTime();
+		for (int i = 0; i < ATTEMPTS; i++) {
+			String quizId = (String) quizService.createQuiz(quiz("Quiz " + i), questions()).getBody();
+			assertThat(quizService.submitQuiz(quizId, userId, Collections.singletonMap("1", "1")).getStatusCode())
+					.isEqualTo(HttpStatus.OK);
+		}
+		statistics.clear();
+		statements.reset();
+	}
+
+	@Test
+	void unpagedHistoryIsOneQuery() {
+		Map<?, ?> body = body(userService.getAttempted(userId, null, null));
+
+		assertThat((List<?>) body.get("quizDetails")).hasSize(ATTEMPTS);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statements.get()).isEqualTo(1);
+	}
+
+	@Test
+	void eachPageIsOneQuery() {
+		Map<?, ?> first = body(userService.getAttempted(userId, 4, null));
+		assertThat((List<?>) first.get("quizDetails")).hasSize(4);
+		assertThat(statements.get()).isEqualTo(1);
+
+		statistics.clear();
+		statements.reset();
+		Map<?, ?> second = body(userService.getAttempted(userId, 4, (String) first.get("next")));
+
+		assertThat((List<?>) second.get("quizDetails")).hasSize(ATTEMPTS - 4);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statements.get()).isEqualTo(1);
+	}
+
+	private static Map<?, ?> body(ResponseEntity<?> response) {
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		return (Map<?, ?>) response.getBody();
+	}
+
+	private static Quiz quiz(String title) {
+		Quiz quiz = new Quiz();
+		quiz.setTitle(title);
+		quiz.setSubject("Math");
+		quiz.setDifficulty("Easy");
+		quiz.setDuration(5);
+		quiz.setUserId("creator");
+		return quiz;
+	}
+
+	private static List<Question> questions() {
+		Question question = new Question();
+		question.setQuestionNo("1");
+		question.setQuestion("What is 1 + 1?");
+		question.setOption1("2");
+		question.setOption2("3");
+		question.setOption3("4");
+		question.setOption4("5");
+		question.setCorrect("1");
+		question.setPoints(1);
+		return Collections.singletonList(question);
+	}
+}
@@ -0,0 +1,97 @@
+package com.quizapp.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Space-Saving sketch: exact counts below capacity, eviction and its error
+ * bound above it, and decay.
+ */
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyBelowCapacity() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(3);
+        offer(sketch, "a", 3);
+        offer(sketch, "b", 5);
+        offer(sketch, "c", 1);
+
+        assertThat(sketch.top(10, 0)).containsExactly("b", "a", "c");
+        assertThat(sketch.top(2, 0)).containsExactly("b", "a");
+        assertThat(sketch.top(10, 3)).containsExactly("b", "a");
+        assertThat(sketch.top(10, 4)).containsExactly("b");
+    }
+
+    @Test
+    void newKeyReplacesLeastCountedAndInheritsItsCountAsError() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2);
+        offer(sketch, "a", 3);
+        offer(sketch, "b", 1);
+
+        assertThat(sketch.offer("c")).isEqualTo("b");
+
+        assertThat(sketch.size()).isEqualTo(2);
+        // c is counted 2 with error 1, so only 1 occurrence is guaranteed
+        assertThat(sketch.top(10, 1)).containsExactly("a", "c");
+        assertThat(sketch.top(10, 2)).containsExactly("a");
+        assertThat(sketch.offer("c")).isNull();
+        assertThat(sketch.top(10, 2)).containsExactly("a", "c");
+    }
+
+    @Test
+    void keepsHeavyHittersWithinErrorBound() {
+        int capacity = 20;
+        int n = 100_000;
+        SpaceSaving<String> sketch = new SpaceSaving<>(capacity);
+        Map<String, Long> counts = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < n; i++) {
+            double r = random.nextDouble();
+            String key = r < 0.2 ? "hot" : r < 0.3 ? "warm" : r < 0.36 ? "mild" : "cold-" + random.nextInt(5000);
+            counts.merge(key, 1L, Long::sum);
+            sketch.offer(key);
+        }
+
+        // Every key seen more than n/capacity times is kept, ranked by its count
+        assertThat(sketch.top(3, Long.MIN_VALUE)).containsExactly("hot", "warm", "mild");
+        // Its guaranteed count is at most its true count, and at most n/capacity below it
+        for (String key : new String[] { "hot", "warm", "mild" }) {
+            long count = counts.get(key);
+            assertThat(sketch.top(capacity, count + 1)).doesNotContain(key);
+            assertThat(sketch.top(capacity, count - n / capacity)).contains(key);
+        }
+    }
+
+    @Test
+    void decayHalvesCountsAndDropsKeysReachingZero() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(3);
+        offer(sketch, "a", 8);
+        offer(sketch, "b", 3);
+        offer(sketch, "c", 1);
+
+        sketch.decay();
+
+        assertThat(sketch.size()).isEqualTo(2);
+        assertThat(sketch.top(10, 4)).containsExactly("a");
+        assertThat(sketch.top(10, 5)).isEmpty();
+        assertThat(sketch.top(10, 1)).containsExactly("a", "b");
+        // Room freed by the dropped key is taken without evicting
+        assertThat(sketch.offer("d")).isNull();
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThatThrownBy(() -> new SpaceSaving<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void offer(SpaceSaving<String> sketch, String key, int times) {
+        for (int i = 0; i < times; i++)
+            assertThat(sketch.offer(key)).isNull();
+    }
+}
@@ -0,0 +1,111 @@
+package com.quizapp.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * TokenBucket on a fixed clock that only moves when the bucket sleeps or a
+ * test advances it.
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Fixed clock; sleeping advances it and runs whatever should happen meanwhile. */
+    private static final class FixedTicker implements TokenBucket.Ticker {
+        long now = 1_000;
+        long slept;
+        Runnable duringSleep = () -> {
+        };
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void sleep(long nanos) {
+            now += nanos;
+            slept += nanos;
+            duringSleep.run();
+        }
+    }
+
+    private final FixedTicker ticker = new FixedTicker();
+
+    @Test
+    void startsFullAndRefusesOnceEmpty() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(3, 1, ticker);
+
+        for (int i = 0; i < 3; i++)
+            assertThat(bucket.tryAcquire(0, TimeUnit.SECONDS)).isTrue();
+        assertThat(bucket.tryAcquire(0, TimeUnit.SECONDS)).isFalse();
+        assertThat(bucket.nanosUntilAvailable()).isEqualTo(SECOND);
+        assertThat(ticker.slept).isZero();
+    }
+
+    @Test
+    void refillsContinuouslyUpToCapacity() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(3, 2, ticker);
+        drain(bucket, 3);
+
+        ticker.now += SECOND / 4;
+        assertThat(bucket.nanosUntilAvailable()).isEqualTo(SECOND / 4);
+        ticker.now += SECOND / 4;
+        assertThat(bucket.nanosUntilAvailable()).isZero();
+
+        ticker.now += 60 * SECOND;
+        drain(bucket, 3);
+        assertThat(bucket.tryAcquire(0, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void waitsForNextPermitWithinTimeout() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1, ticker);
+        drain(bucket, 1);
+
+        assertThat(bucket.tryAcquire(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(ticker.slept).isEqualTo(SECOND);
+        assertThat(bucket.nanosUntilAvailable()).isEqualTo(SECOND);
+    }
+
+    @Test
+    void refusesWithoutWaitingWhenNextPermitComesTooLate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1, ticker);
+        drain(bucket, 1);
+
+        assertThat(bucket.tryAcquire(999, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(ticker.slept).isZero();
+    }
+
+    @Test
+    void refusesAfterWaitingWhenAnotherCallerTookThePermit() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1, 1, ticker);
+        drain(bucket, 1);
+        ticker.duringSleep = () -> {
+            try {
+                assertThat(bucket.tryAcquire(0, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+
+        assertThat(bucket.tryAcquire(1500, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(ticker.slept).isEqualTo(SECOND);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThatThrownBy(() -> new TokenBucket(0.5, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void drain(TokenBucket bucket, int permits) throws InterruptedException {
+        for (int i = 0; i < permits; i++)
+            assertThat(bucket.tryAcquire(0, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -1,5 +1,6 @@
 import { useEffect, useState } from "react";
 import QuestionsPage from "./QuestionsPage";
+import { formatDate } from "../../utils/date";
 
 const QuizDetails = (props) => {
    const [quiz, setQuiz] = useState();
@@ -34,7 +35,7 @@ const QuizDetails = (props) => {
                      Subject: <span className="fst-italic"> {quiz.subject}</span>
                   </h4>
                   <h4 className="fs-6 ">
-                     Date: <span className="fst-italic"> {quiz.date}</span>
+                     Date: <span className="fst-italic"> {formatDate(quiz.date)}</span>
                   </h4>
                </div>
                <div className="d-flex justify-content-between mt-2">
@@ -88,6 +88,9 @@ const QuizStart = (props) => {
          } else if (res.status === 401) {
             toast.error("Session expired. Please login again.");
             navigate("/");
+         } else if (res.status === 409) {
+            toast.error("You have already attempted this quiz.");
+            navigate("/Practice");
          } else {
             toast.error("Submission failed. Try again.");
          }
@@ -3,14 +3,16 @@ import Header from "../HomePage/Header";
 import "./recents.css";
 import Spinner from "../HomePage/Spinner";
 import Footer from "../HomePage/Footer";
+import { formatDate } from "../../utils/date";
 const Recents = () => {
    const [activeIndex, setActiveIndex] = useState(-1);
    const [showSpinner, setShowSpinner] = useState(true);
    const [error, setError] = useState(null);
    const [data, setData] = useState([]);
+   const [next, setNext] = useState(null);
 
-   const getAttempted = async () => {
-      setShowSpinner(true);
+   const getAttempted = async (cursor) => {
+      if (!cursor) setShowSpinner(true);
       const pid = localStorage.getItem("pid");
 
       if (pid === null) {
@@ -19,7 +21,9 @@ const Recents = () => {
          return;
       }
       try {
-         const url = "http://localhost:8080/user/attempted";
+         const url =
+            "http://localhost:8080/user/attempted?limit=20" +
+            (cursor ? "&cursor=" + encodeURIComponent(cursor) : "");
          const res = await fetch(url, {
             headers: {
                "Content-Type": "application/json",
@@ -35,7 +39,8 @@ const Recents = () => {
                ...item,
                ...resData.quizDetails[index],
             }));
-            setData(combinedData);
+            setData((prev) => (cursor ? [...prev, ...combinedData] : combinedData));
+            setNext(resData.next || null);
          } else if (res.status === 401) {
             setError("Login to proceed");
          } else {
@@ -104,13 +109,22 @@ const Recents = () => {
                            >
                               <div className="d-flex justify-content-between fst-italic">
                                  <h5 className="fs-6">{item.subject}</h5>
-                                 <h5 className="fs-6">{item.date}</h5>
+                                 <h5 className="fs-6">{formatDate(item.date)}</h5>
                               </div>
                               <div className="text-center text-success pt-2">
                                  <h3 className="fw-bold">{item.title}</h3>
                               </div>
                            </button>
                         ))}
+                        {next && (
+                           <button
+                              type="button"
+                              className="list-group-item list-group-item-action text-center text-info"
+                              onClick={() => getAttempted(next)}
+                           >
+                              Load more
+                           </button>
+                        )}
                      </ul>
                   </div>
                   {activeIndex === -1 && (
@@ -140,7 +154,7 @@ const Recents = () => {
                            </div>
                            <div className="pt-3">
                               <span className="fs-4 fw-bold">Attempted Date: </span>{" "}
-                              <span className="fs-4 fst-italic">{data[activeIndex].date}</span>
+                              <span className="fs-4 fst-italic">{formatDate(data[activeIndex].date)}</span>
                            </div>
                         </div>
                         <div className="d-flex justify-content-between">
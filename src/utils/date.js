@@ -0,0 +1,7 @@
+// Quiz and attempt dates are ISO-8601 instants from the server; older clients
+// stored the browser's locale string, which is shown as-is.
+export function formatDate(value) {
+  if (!value) return "";
+  const date = new Date(value);
+  return isNaN(date.getTime()) ? value : date.toLocaleDateString();
+}